@@ -20,6 +20,17 @@ java {
     }
 }
 
+// Performance tests on real Go PSI, see src/perfTest; run with `./gradlew perfTest`
+sourceSets {
+    create("perfTest") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations["perfTestImplementation"].extendsFrom(configurations.testImplementation.get())
+configurations["perfTestRuntimeOnly"].extendsFrom(configurations.testRuntimeOnly.get())
+
 intellij {
     version.set("2024.1.2")
     type.set("GO")
@@ -45,4 +56,12 @@ dependencies {
     testImplementation("org.mockito:mockito-core:5.12.0")
 }
 
-
+// Timing budgets are only meaningful on a quiet machine, so these stay out of `check`
+val perfTest by tasks.registering(Test::class) {
+    description = "Runs the expansion performance tests against light Go fixtures."
+    group = "verification"
+    testClassesDirs = sourceSets["perfTest"].output.classesDirs
+    classpath = sourceSets["perfTest"].runtimeClasspath
+    shouldRunAfter(tasks.test)
+    maxHeapSize = "2g"
+}
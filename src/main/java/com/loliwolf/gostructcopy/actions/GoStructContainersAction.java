@@ -0,0 +1,147 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.util.PsiNavigateUtil;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructReverseIndex;
+import com.loliwolf.gostructcopy.core.GoStructReverseIndex.Container;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists every type of the project whose expansion contains the type at the caret, answered from
+ * {@link GoStructReverseIndex}, and navigates to the chosen one. Types nothing else references, such as API payloads,
+ * come first.
+ */
+public class GoStructContainersAction extends AnAction {
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        event.getPresentation().setEnabledAndVisible(event.getProject() != null && editor != null && psiFile instanceof GoFile);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        if (project == null || editor == null || !(psiFile instanceof GoFile goFile)) {
+            return;
+        }
+
+        GoStructCopyOptions options = GoStructCopySettings.getInstance(project).getOptions();
+        int caretOffset = editor.getCaretModel().getOffset();
+        Computable<GoTypeSpec> findTask = () -> GoStructCopyProcessor.forProject(project, options).findTypeSpecAtCaret(goFile, caretOffset);
+        GoTypeSpec spec = ApplicationManager.getApplication().runReadAction(findTask);
+        if (spec == null) {
+            GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+            return;
+        }
+        String name = ApplicationManager.getApplication().runReadAction((Computable<String>) spec::getName);
+        SmartPsiElementPointer<GoTypeSpec> target = SmartPointerManager.createPointer(spec);
+        GoStructReverseIndex reverseIndex = GoStructReverseIndex.getInstance(project);
+        String title = reverseIndex.isUpToDate(options) ? "Finding types containing " + name : "Indexing Go types";
+
+        new Task.Backgroundable(project, title, true) {
+            private @Nullable List<Row> rows;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                GoStructReverseIndex.Index index = reverseIndex.getIndex(options, indicator);
+                rows = ReadAction.compute(() -> {
+                    GoTypeSpec element = target.getElement();
+                    if (element == null) {
+                        return null;
+                    }
+                    List<Row> result = new ArrayList<>();
+                    GoStructReverseIndex.TypeKey key = GoStructReverseIndex.TypeKey.of(element);
+                    if (key == null) {
+                        return result;
+                    }
+                    for (Container container : index.containersOf(key)) {
+                        // Gone when its file changed after the index was built
+                        GoTypeSpec spec = container.key().findSpec(project);
+                        if (spec != null) {
+                            result.add(new Row(SmartPointerManager.createPointer(spec), String.valueOf(spec.getName()),
+                                    container.distance(), container.root()));
+                        }
+                    }
+                    return result;
+                });
+            }
+
+            @Override
+            public void onSuccess() {
+                if (rows == null) {
+                    GoStructCopyAction.notify(project, "Type " + name + " no longer exists.", NotificationType.WARNING);
+                } else if (rows.isEmpty()) {
+                    GoStructCopyAction.notify(project, "No type of the project contains " + name + ".", NotificationType.INFORMATION);
+                } else {
+                    showContainers(project, name, rows);
+                }
+            }
+        }.queue();
+    }
+
+    private static void showContainers(@NotNull Project project, @NotNull String name, @NotNull List<Row> rows) {
+        JBPopupFactory.getInstance()
+                .createPopupChooserBuilder(rows)
+                .setTitle("Types Containing " + name + " (" + rows.size() + ")")
+                .setRenderer(new ColoredListCellRenderer<Row>() {
+                    @Override
+                    protected void customizeCellRenderer(@NotNull JList<? extends Row> list, Row row, int index,
+                                                         boolean selected, boolean hasFocus) {
+                        append(row.name(), row.root() ? SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES : SimpleTextAttributes.REGULAR_ATTRIBUTES);
+                        append("  " + row.distance() + (row.distance() == 1 ? " level down" : " levels down"),
+                                SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                    }
+                })
+                .setNamerForFiltering(Row::name)
+                .setItemChosenCallback(row -> {
+                    GoTypeSpec spec = row.spec().getElement();
+                    if (spec != null) {
+                        PsiNavigateUtil.navigate(spec);
+                    }
+                })
+                .createPopup()
+                .showCenteredInCurrentWindow(project);
+    }
+
+    /**
+     * A {@link Container} detached from the read action it was found in.
+     */
+    private record Row(@NotNull SmartPsiElementPointer<GoTypeSpec> spec, @NotNull String name, int distance, boolean root) {
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -1,8 +1,16 @@
 package com.loliwolf.gostructcopy.actions;
 
+import com.loliwolf.gostructcopy.core.GoClosureEstimate;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import com.loliwolf.gostructcopy.core.GoStructEvents;
+import com.loliwolf.gostructcopy.core.GoStructExpansionRequests;
+import com.loliwolf.gostructcopy.core.GoStructHistory;
 import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
 import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import com.loliwolf.gostructcopy.core.GoStructResultCache;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
 import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
 import com.intellij.notification.NotificationGroupManager;
 import com.intellij.notification.NotificationType;
 import com.intellij.openapi.actionSystem.ActionUpdateThread;
@@ -10,18 +18,25 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.ide.CopyPasteManager;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Computable;
 import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.datatransfer.StringSelection;
 
 public class GoStructCopyAction extends AnAction implements DumbAware {
     private static final String NOTIFICATION_GROUP_ID = "GoStructCopy.Notification";
+    // Closures beyond this many types prompt before expanding
+    private static final int LARGE_CLOSURE_TYPES = 500;
 
     @Override
     public void update(@NotNull AnActionEvent event) {
@@ -42,10 +57,76 @@ public class GoStructCopyAction extends AnAction implements DumbAware {
             return;
         }
 
-        GoStructCopyProcessor processor = new GoStructCopyProcessor();
-        Computable<GoStructCopyResult> task = () -> processor.expandAtCaret(goFile, editor.getCaretModel().getOffset());
-        GoStructCopyResult result = ApplicationManager.getApplication().runReadAction(task);
+        GoStructCopyOptions options = GoStructCopySettings.getInstance(project).getOptions();
+        GoStructCopyProcessor processor = GoStructCopyProcessor.forProject(project, options);
+        int caretOffset = editor.getCaretModel().getOffset();
+        Computable<GoTypeSpec> findTask = () -> processor.findTypeSpecAtCaret(goFile, caretOffset);
+        GoTypeSpec spec = ApplicationManager.getApplication().runReadAction(findTask);
+        if (spec == null) {
+            notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+            return;
+        }
+
+        GoStructExpansionRequests requests = GoStructExpansionRequests.getInstance(project);
+        if (!requests.prepare(spec, options)) {
+            // Pressed again while the same copy is estimated or expanded; that one copies when it finishes
+            return;
+        }
+        // Cached results are cheap however large; otherwise count the closure before paying for it, off the UI thread
+        ReadAction.nonBlocking(() -> !spec.isValid() || GoStructResultCache.getInstance(project).get(spec, options) != null
+                        ? null
+                        : processor.estimateClosure(spec, LARGE_CLOSURE_TYPES))
+                .expireWith(project)
+                .finishOnUiThread(ModalityState.defaultModalityState(), estimate -> expand(project, spec, processor, estimate))
+                .submit(AppExecutorUtil.getAppExecutorService())
+                .onError(error -> requests.abandon(spec, options));
+    }
+
+    /**
+     * Starts the expansion once the closure is estimated, after asking how to proceed when it is large.
+     */
+    private static void expand(@NotNull Project project,
+                               @NotNull GoTypeSpec spec,
+                               @NotNull GoStructCopyProcessor processor,
+                               @Nullable GoClosureEstimate estimate) {
+        GoStructCopyProcessor expandingProcessor = processor;
+        if (estimate != null && estimate.truncated()) {
+            int depth = estimate.maxDepthWithinLimit();
+            String message = "This struct references more than " + LARGE_CLOSURE_TYPES + " types. Copying all of them may take a while.";
+            if (depth == 0) {
+                // Even the types the struct references directly are too many, no depth limit helps
+                if (Messages.showOkCancelDialog(project, message, "Large Go Struct", "Copy Everything", "Cancel",
+                        Messages.getWarningIcon()) != Messages.OK) {
+                    GoStructExpansionRequests.getInstance(project).abandon(spec, processor.getOptions());
+                    return;
+                }
+            } else {
+                int choice = Messages.showYesNoCancelDialog(project, message,
+                        "Large Go Struct",
+                        "Limit Depth to " + depth,
+                        "Copy Everything",
+                        "Cancel",
+                        Messages.getWarningIcon());
+                if (choice == Messages.CANCEL) {
+                    GoStructExpansionRequests.getInstance(project).abandon(spec, processor.getOptions());
+                    return;
+                }
+                if (choice == Messages.YES) {
+                    expandingProcessor = GoStructCopyProcessor.forProject(project, processor.getOptions().withMaxDepth(depth));
+                }
+            }
+        }
+        GoStructCopyProcessor finalProcessor = expandingProcessor;
+        int expectedTypes = estimate != null ? estimate.typeCount() : 0;
+        GoStructExpansionRequests.getInstance(project).expand(spec, finalProcessor, expectedTypes,
+                result -> finish(project, spec, finalProcessor.getOptions(), !finalProcessor.resolvesSyntactically(), result));
+    }
 
+    static void finish(@NotNull Project project,
+                       @NotNull GoTypeSpec spec,
+                       @NotNull GoStructCopyOptions options,
+                       boolean recordHistory,
+                       @NotNull GoStructCopyResult result) {
         if (!result.success()) {
             notify(project, result.message(), NotificationType.WARNING);
             return;
@@ -57,10 +138,27 @@ public class GoStructCopyAction extends AnAction implements DumbAware {
             return;
         }
 
-        CopyPasteManager.getInstance().setContents(new StringSelection(content));
+        copyToClipboard(content);
+        // An expansion done while indexing may be incomplete and must not replace a complete one in the history
+        ApplicationManager.getApplication().runReadAction(() -> {
+            if (recordHistory && spec.isValid()) {
+                GoStructHistory.getInstance(project).record(spec, options, content);
+            }
+        });
         notify(project, result.message(), NotificationType.INFORMATION);
     }
 
+    static void copyToClipboard(@NotNull String content) {
+        GoStructEvents.ClipboardWrite event = new GoStructEvents.ClipboardWrite();
+        event.begin();
+        CopyPasteManager.getInstance().setContents(new StringSelection(content));
+        event.end();
+        if (event.shouldCommit()) {
+            event.outputBytes = GoStructEvents.utf8Length(content);
+            event.commit();
+        }
+    }
+
     @Override
     public @NotNull ActionUpdateThread getActionUpdateThread() {
         return ActionUpdateThread.BGT;
@@ -72,7 +170,7 @@ public class GoStructCopyAction extends AnAction implements DumbAware {
         return editor != null && psiFile instanceof GoFile;
     }
 
-    private static void notify(@NotNull Project project, @NotNull String message, @NotNull NotificationType type) {
+    static void notify(@NotNull Project project, @NotNull String message, @NotNull NotificationType type) {
         NotificationGroupManager.getInstance()
                 .getNotificationGroup(NOTIFICATION_GROUP_ID)
                 .createNotification(message, type)
@@ -0,0 +1,142 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoStructType;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.loliwolf.gostructcopy.core.GoStructBatchExpander;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Copies every struct declared in the current Go file, or in the selected Go files and directories, as one listing.
+ */
+public class GoStructCopyAllAction extends AnAction {
+    // Discovery threads per batch; they block in read actions while write actions are pending
+    private static final int MAX_PARALLELISM = 4;
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        event.getPresentation().setEnabledAndVisible(event.getProject() != null && !collectFiles(event).isEmpty());
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            return;
+        }
+        Set<VirtualFile> files = collectFiles(event);
+        Computable<List<SmartPsiElementPointer<GoTypeSpec>>> task = () -> collectRoots(project, files);
+        List<SmartPsiElementPointer<GoTypeSpec>> roots = ApplicationManager.getApplication().runReadAction(task);
+        if (roots.isEmpty()) {
+            GoStructCopyAction.notify(project, "No struct declarations found.", NotificationType.WARNING);
+            return;
+        }
+
+        new Task.Backgroundable(project, "Expanding " + roots.size() + " Go structs", true) {
+            private @Nullable GoStructCopyResult result;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                // A pool of its own, so that blocked discovery tasks never hold threads of the shared common pool
+                ForkJoinPool pool = new ForkJoinPool(Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+                try {
+                    GoStructBatchExpander expander = new GoStructBatchExpander(project,
+                            GoStructCopySettings.getInstance(project).getOptions(), pool, indicator);
+                    result = expander.expand(roots);
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (result == null) {
+                    return;
+                }
+                if (!result.success() || result.content() == null) {
+                    GoStructCopyAction.notify(project, result.message(), NotificationType.WARNING);
+                    return;
+                }
+                GoStructCopyAction.copyToClipboard(result.content());
+                GoStructCopyAction.notify(project, result.message(), NotificationType.INFORMATION);
+            }
+        }.queue();
+    }
+
+    @NotNull
+    private static Set<VirtualFile> collectFiles(@NotNull AnActionEvent event) {
+        Set<VirtualFile> result = new LinkedHashSet<>();
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        if (psiFile instanceof GoFile && psiFile.getVirtualFile() != null) {
+            result.add(psiFile.getVirtualFile());
+            return result;
+        }
+        VirtualFile[] selection = event.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+        if (selection == null) {
+            return result;
+        }
+        for (VirtualFile file : selection) {
+            if (file.isDirectory()) {
+                // Only the package itself, like `go build` on a directory
+                for (VirtualFile child : file.getChildren()) {
+                    if (isGoFile(child)) {
+                        result.add(child);
+                    }
+                }
+            } else if (isGoFile(file)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isGoFile(@NotNull VirtualFile file) {
+        return !file.isDirectory() && "go".equals(file.getExtension());
+    }
+
+    @NotNull
+    private static List<SmartPsiElementPointer<GoTypeSpec>> collectRoots(@NotNull Project project, @NotNull Set<VirtualFile> files) {
+        List<SmartPsiElementPointer<GoTypeSpec>> result = new ArrayList<>();
+        SmartPointerManager pointers = SmartPointerManager.getInstance(project);
+        for (VirtualFile file : files) {
+            if (!(PsiManager.getInstance(project).findFile(file) instanceof GoFile goFile)) {
+                continue;
+            }
+            for (GoTypeSpec spec : goFile.getTypes()) {
+                if (spec.getSpecType().getType() instanceof GoStructType) {
+                    result.add(pointers.createSmartPsiElementPointer(spec));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
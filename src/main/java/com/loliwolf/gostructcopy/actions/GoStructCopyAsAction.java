@@ -0,0 +1,119 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructFormat;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.JList;
+import javax.swing.ListSelectionModel;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Copies the struct at the caret in other {@link GoStructFormat}s, such as JSON Schema or TypeScript, chosen from a
+ * popup. Several formats can be selected at once; they share one expansion and are copied one after another.
+ */
+public class GoStructCopyAsAction extends AnAction implements DumbAware {
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        event.getPresentation().setEnabledAndVisible(event.getProject() != null && editor != null && psiFile instanceof GoFile);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        if (project == null || editor == null || !(psiFile instanceof GoFile goFile)) {
+            return;
+        }
+
+        GoStructCopyProcessor processor = GoStructCopyProcessor.forProject(project, GoStructCopySettings.getInstance(project).getOptions());
+        int caretOffset = editor.getCaretModel().getOffset();
+        Computable<GoTypeSpec> findTask = () -> processor.findTypeSpecAtCaret(goFile, caretOffset);
+        GoTypeSpec spec = ApplicationManager.getApplication().runReadAction(findTask);
+        if (spec == null) {
+            GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+            return;
+        }
+        SmartPsiElementPointer<GoTypeSpec> pointer = SmartPointerManager.createPointer(spec);
+
+        JBPopupFactory.getInstance()
+                .createPopupChooserBuilder(List.of(GoStructFormat.values()))
+                .setTitle("Copy Go Struct As")
+                .setRenderer(new ColoredListCellRenderer<GoStructFormat>() {
+                    @Override
+                    protected void customizeCellRenderer(@NotNull JList<? extends GoStructFormat> list, GoStructFormat format,
+                                                         int index, boolean selected, boolean hasFocus) {
+                        append(format.getDisplayName());
+                    }
+                })
+                .setNamerForFiltering(GoStructFormat::getDisplayName)
+                .setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION)
+                .setItemsChosenCallback(formats -> copy(project, processor, pointer, formats))
+                .createPopup()
+                .showCenteredInCurrentWindow(project);
+    }
+
+    private static void copy(@NotNull Project project,
+                             @NotNull GoStructCopyProcessor processor,
+                             @NotNull SmartPsiElementPointer<GoTypeSpec> pointer,
+                             @NotNull Set<? extends GoStructFormat> chosen) {
+        if (chosen.isEmpty()) {
+            return;
+        }
+        Set<GoStructFormat> formats = EnumSet.noneOf(GoStructFormat.class);
+        formats.addAll(chosen);
+        ReadAction.nonBlocking(() -> {
+                    GoTypeSpec spec = pointer.getElement();
+                    return spec != null ? processor.expandFormats(spec, formats) : null;
+                })
+                .expireWith(project)
+                .finishOnUiThread(ModalityState.defaultModalityState(), (Map<GoStructFormat, String> listings) -> {
+                    if (listings == null || listings.isEmpty()) {
+                        GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+                        return;
+                    }
+                    // The map iterates in declaration order, so the listings come out in the order the popup shows
+                    GoStructCopyAction.copyToClipboard(String.join("\n\n", listings.values()));
+                    String names = listings.keySet().stream()
+                            .map(GoStructFormat::getDisplayName)
+                            .collect(Collectors.joining(", "));
+                    GoStructCopyAction.notify(project, "Copied struct as " + names + " to clipboard",
+                            NotificationType.INFORMATION);
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -0,0 +1,107 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructDelta;
+import com.loliwolf.gostructcopy.core.GoStructSnapshots;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Copies only the definitions of the struct at the caret that changed since this action last copied it, and takes a
+ * new snapshot. The first use copies everything.
+ */
+public class GoStructCopyChangedAction extends AnAction implements DumbAware {
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        event.getPresentation().setEnabledAndVisible(event.getProject() != null && editor != null && psiFile instanceof GoFile);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        if (project == null || editor == null || !(psiFile instanceof GoFile goFile)) {
+            return;
+        }
+
+        GoStructCopyProcessor processor = GoStructCopyProcessor.forProject(project, GoStructCopySettings.getInstance(project).getOptions());
+        int caretOffset = editor.getCaretModel().getOffset();
+        Computable<GoTypeSpec> findTask = () -> processor.findTypeSpecAtCaret(goFile, caretOffset);
+        GoTypeSpec spec = ApplicationManager.getApplication().runReadAction(findTask);
+        if (spec == null) {
+            GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+            return;
+        }
+        SmartPsiElementPointer<GoTypeSpec> pointer = SmartPointerManager.createPointer(spec);
+        GoStructSnapshots snapshots = GoStructSnapshots.getInstance(project);
+
+        ReadAction.nonBlocking(() -> {
+                    GoTypeSpec root = pointer.getElement();
+                    if (root == null) {
+                        return null;
+                    }
+                    String rootKey = GoStructSnapshots.rootKey(root);
+                    GoStructDelta delta = processor.expandChanged(root, snapshots.get(rootKey));
+                    return delta != null ? new Snapshot(rootKey, delta, processor.resolvesSyntactically(), processor.getIndexingNote()) : null;
+                })
+                .expireWith(project)
+                .finishOnUiThread(ModalityState.defaultModalityState(), snapshot -> finish(project, snapshots, snapshot))
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private static void finish(@NotNull Project project, @NotNull GoStructSnapshots snapshots, Snapshot snapshot) {
+        if (snapshot == null) {
+            GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+            return;
+        }
+        GoStructDelta delta = snapshot.delta();
+        // An expansion done while indexing may be incomplete; taking it as the snapshot would hide changes next time
+        if (!snapshot.incomplete()) {
+            snapshots.put(snapshot.rootKey(), delta.hashes());
+        }
+        String removed = delta.removed().isEmpty() ? "" : "; no longer used: " + String.join(", ", delta.removed());
+        String suffix = removed + (snapshot.incomplete() ? "; snapshot kept while indexing" : "") + snapshot.indexingNote();
+        NotificationType type = snapshot.incomplete() ? NotificationType.WARNING : NotificationType.INFORMATION;
+        if (delta.changedCount() == 0) {
+            GoStructCopyAction.notify(project, "No struct changed since the last snapshot" + suffix, type);
+            return;
+        }
+        GoStructCopyAction.copyToClipboard(delta.content());
+        GoStructCopyAction.notify(project, "Copied " + delta.changedCount() + " of " + delta.hashes().size()
+                + " structs changed since the last snapshot" + suffix, type);
+    }
+
+    /**
+     * @param incomplete   whether the expansion was done while indexing, see {@link GoStructCopyProcessor#resolvesSyntactically()}
+     * @param indexingNote see {@link GoStructCopyProcessor#getIndexingNote()}
+     */
+    private record Snapshot(@NotNull String rootKey, @NotNull GoStructDelta delta, boolean incomplete, @NotNull String indexingNote) {
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -0,0 +1,103 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.goide.psi.GoTypeSpec;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructExpansionRequests;
+import com.loliwolf.gostructcopy.core.GoStructHistory;
+import com.loliwolf.gostructcopy.core.GoStructHistory.Entry;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.JList;
+import java.util.List;
+
+/**
+ * Lists the structs copied last and copies the chosen one again, straight from {@link GoStructHistory} when its text is
+ * still valid and by expanding it again otherwise.
+ */
+public class GoStructHistoryAction extends AnAction implements DumbAware {
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        event.getPresentation().setEnabledAndVisible(project != null);
+        if (project != null) {
+            event.getPresentation().setEnabled(!GoStructHistory.getInstance(project).getEntries().isEmpty());
+        }
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            return;
+        }
+        List<Entry> entries = GoStructHistory.getInstance(project).getEntries();
+        if (entries.isEmpty()) {
+            GoStructCopyAction.notify(project, "No Go structs copied yet.", NotificationType.INFORMATION);
+            return;
+        }
+        JBPopupFactory.getInstance()
+                .createPopupChooserBuilder(entries)
+                .setTitle("Recent Go Structs")
+                .setRenderer(new ColoredListCellRenderer<Entry>() {
+                    @Override
+                    protected void customizeCellRenderer(@NotNull JList<? extends Entry> list, Entry entry, int index,
+                                                         boolean selected, boolean hasFocus) {
+                        append(entry.name());
+                        if (!entry.packagePath().isEmpty()) {
+                            append("  " + entry.packagePath(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                        }
+                        append("  " + StringUtil.formatFileSize(entry.length()), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                        if (!entry.isRetained()) {
+                            append("  (expands again)", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                        }
+                    }
+                })
+                .setNamerForFiltering(Entry::name)
+                .setItemChosenCallback(entry -> copyAgain(project, entry))
+                .createPopup()
+                .showCenteredInCurrentWindow(project);
+    }
+
+    private static void copyAgain(@NotNull Project project, @NotNull Entry entry) {
+        GoStructHistory history = GoStructHistory.getInstance(project);
+        String content = history.getContent(entry);
+        if (content != null) {
+            GoStructCopyAction.copyToClipboard(content);
+            GoStructCopyAction.notify(project, "Copied struct " + entry.name() + " to clipboard", NotificationType.INFORMATION);
+            return;
+        }
+
+        // Resolving the pointer is cheap; the expansion itself runs in the background like a fresh copy
+        GoTypeSpec spec = ApplicationManager.getApplication().runReadAction(
+                (Computable<GoTypeSpec>) () -> entry.spec().getElement());
+        if (spec == null) {
+            history.remove(entry);
+            GoStructCopyAction.notify(project, "Struct " + entry.name() + " no longer exists.", NotificationType.WARNING);
+            return;
+        }
+        // Copied again as it was copied before, including a depth limit chosen for a large closure
+        GoStructCopyOptions options = entry.options();
+        GoStructCopyProcessor processor = GoStructCopyProcessor.forProject(project, options);
+        GoStructExpansionRequests.getInstance(project).expand(spec, processor, 0,
+                result -> GoStructCopyAction.finish(project, spec, options, !processor.resolvesSyntactically(), result));
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
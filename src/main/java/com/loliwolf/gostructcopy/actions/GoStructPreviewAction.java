@@ -0,0 +1,72 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.psi.PsiFile;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.ui.GoStructPreviewPanel;
+import com.loliwolf.gostructcopy.ui.GoStructPreviewToolWindowFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Pins the struct under the caret to the live preview tool window.
+ */
+public class GoStructPreviewAction extends AnAction implements DumbAware {
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        event.getPresentation().setEnabledAndVisible(editor != null && psiFile instanceof GoFile);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            return;
+        }
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        if (editor == null || !(psiFile instanceof GoFile goFile)) {
+            GoStructCopyAction.notify(project, "This action is available only inside Go files.", NotificationType.WARNING);
+            return;
+        }
+
+        GoStructCopyProcessor processor = new GoStructCopyProcessor();
+        Computable<GoTypeSpec> task = () -> processor.findTypeSpecAtCaret(goFile, editor.getCaretModel().getOffset());
+        GoTypeSpec spec = ApplicationManager.getApplication().runReadAction(task);
+        if (spec == null) {
+            GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+            return;
+        }
+
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(GoStructPreviewToolWindowFactory.TOOL_WINDOW_ID);
+        if (toolWindow == null) {
+            return;
+        }
+        toolWindow.activate(() -> {
+            GoStructPreviewPanel panel = GoStructPreviewToolWindowFactory.findPanel(toolWindow);
+            if (panel != null) {
+                panel.pin(spec);
+            }
+        });
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -0,0 +1,130 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.goide.GoLanguage;
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.ide.scratch.ScratchFileService;
+import com.intellij.ide.scratch.ScratchRootType;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.util.DocumentUtil;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructListing;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Expands the struct at the caret into a new Go scratch file instead of the clipboard, for closures too large to paste.
+ * The scratch file opens right away; the closure is collected in a non-blocking read action, then the definitions are
+ * appended batch by batch while the rest is rendered.
+ */
+public class GoStructScratchAction extends AnAction implements DumbAware {
+    // Definitions per document update: fewer updates mean fewer re-highlights, smaller ones an earlier first screen
+    private static final int BATCH_SIZE = 200;
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        event.getPresentation().setEnabledAndVisible(event.getProject() != null && editor != null && psiFile instanceof GoFile);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        if (project == null || editor == null || !(psiFile instanceof GoFile goFile)) {
+            return;
+        }
+
+        GoStructCopyProcessor processor = GoStructCopyProcessor.forProject(project, GoStructCopySettings.getInstance(project).getOptions());
+        int caretOffset = editor.getCaretModel().getOffset();
+        Computable<GoTypeSpec> findTask = () -> processor.findTypeSpecAtCaret(goFile, caretOffset);
+        GoTypeSpec spec = ApplicationManager.getApplication().runReadAction(findTask);
+        if (spec == null) {
+            GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+            return;
+        }
+        String name = ApplicationManager.getApplication().runReadAction((Computable<String>) spec::getName);
+        VirtualFile scratch = ScratchRootType.getInstance().createScratchFile(project, name + ".go", GoLanguage.INSTANCE,
+                "package main\n\n", ScratchFileService.Option.create_new_always);
+        Document document = scratch != null ? FileDocumentManager.getInstance().getDocument(scratch) : null;
+        if (document == null) {
+            GoStructCopyAction.notify(project, "Could not create a scratch file.", NotificationType.WARNING);
+            return;
+        }
+        FileEditorManager.getInstance(project).openFile(scratch, true);
+
+        SmartPsiElementPointer<GoTypeSpec> pointer = SmartPointerManager.createPointer(spec);
+        new Task.Backgroundable(project, "Expanding " + name + " into scratch file", true) {
+            private @Nullable GoStructListing listing;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                // Restarted by writes instead of holding them off, which would also hold off the appends below
+                listing = ReadAction.nonBlocking(() -> {
+                            GoTypeSpec root = pointer.getElement();
+                            return root != null ? processor.collectListing(root) : null;
+                        })
+                        .expireWith(project)
+                        .wrapProgress(indicator)
+                        .executeSynchronously();
+                if (listing != null) {
+                    listing.renderInBatches(BATCH_SIZE, chunk -> append(project, document, chunk));
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (listing == null) {
+                    GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+                } else {
+                    GoStructCopyAction.notify(project, "Expanded struct " + listing.getTypeName() + " ("
+                            + listing.getDefinitionCount() + " types)", NotificationType.INFORMATION);
+                }
+            }
+        }.queue();
+    }
+
+    /**
+     * Appends {@code chunk} on the UI thread and waits for it, outside any read action, so each chunk shows as soon as
+     * it is rendered and cancelling stops the rest. Each goes in as one bulk update, so the editor lays out and
+     * highlights it once.
+     */
+    private static void append(@NotNull Project project, @NotNull Document document, @NotNull String chunk) {
+        ApplicationManager.getApplication().invokeAndWait(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+            WriteCommandAction.runWriteCommandAction(project, () ->
+                    DocumentUtil.executeInBulk(document, () -> document.insertString(document.getTextLength(), chunk)));
+        }, ModalityState.defaultModalityState());
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
@@ -0,0 +1,81 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.loliwolf.gostructcopy.core.GoStructStatistics;
+import com.loliwolf.gostructcopy.core.GoStructStatistics.Sample;
+import com.loliwolf.gostructcopy.core.GoStructStatistics.Snapshot;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+/**
+ * Shows the counters and recent phase timings collected by {@link GoStructStatistics}.
+ */
+public class GoStructStatisticsAction extends AnAction implements DumbAware {
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        event.getPresentation().setEnabledAndVisible(event.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            return;
+        }
+        Messages.showInfoMessage(project, format(GoStructStatistics.getInstance(project).snapshot()), "Go Struct Copy Statistics");
+    }
+
+    @NotNull
+    static String format(@NotNull Snapshot snapshot) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Expansions: ").append(snapshot.expansions())
+                .append(" (").append(snapshot.typesExpanded()).append(" types)\n");
+        builder.append("resolve() calls: ").append(snapshot.resolveCalls()).append('\n');
+        builder.append("Files with AST loaded: ").append(snapshot.filesLoaded()).append('\n');
+        builder.append("Name conflict rounds: ").append(snapshot.conflictRounds()).append('\n');
+        appendHitRate(builder, "Resolve cache", snapshot.resolveCacheHits(), snapshot.resolveCacheMisses());
+        appendHitRate(builder, "Result cache", snapshot.resultCacheHits(), snapshot.resultCacheMisses());
+
+        if (snapshot.recent().isEmpty()) {
+            return builder.toString();
+        }
+        builder.append("\nLast ").append(snapshot.recent().size()).append(" expansions (p50 / p99):\n");
+        appendPhase(builder, snapshot, "Total", Sample::totalNanos);
+        appendPhase(builder, snapshot, "Collect", Sample::collectNanos);
+        appendPhase(builder, snapshot, "Naming", Sample::namingNanos);
+        appendPhase(builder, snapshot, "Finish", Sample::finishNanos);
+        appendPhase(builder, snapshot, "Render", Sample::renderNanos);
+        return builder.toString();
+    }
+
+    private static void appendHitRate(@NotNull StringBuilder builder, @NotNull String name, long hits, long misses) {
+        long total = hits + misses;
+        builder.append(name).append(": ");
+        if (total == 0) {
+            builder.append("unused\n");
+            return;
+        }
+        builder.append(String.format(Locale.ROOT, "%.1f%% hits (%d of %d)%n", hits * 100.0 / total, hits, total));
+    }
+
+    private static void appendPhase(@NotNull StringBuilder builder,
+                                    @NotNull Snapshot snapshot,
+                                    @NotNull String phase,
+                                    @NotNull ToLongFunction<Sample> nanos) {
+        builder.append(String.format(Locale.ROOT, "  %s: %.1f ms / %.1f ms%n", phase,
+                snapshot.percentile(nanos, 50) / 1e6, snapshot.percentile(nanos, 99) / 1e6));
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
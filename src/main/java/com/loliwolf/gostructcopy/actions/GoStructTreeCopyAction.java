@@ -0,0 +1,76 @@
+package com.loliwolf.gostructcopy.actions;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
+import com.loliwolf.gostructcopy.ui.GoStructTreePopup;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shows the struct under the caret as a lazily expanded tree and copies only the checked part of it.
+ */
+public class GoStructTreeCopyAction extends AnAction implements DumbAware {
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        event.getPresentation().setEnabledAndVisible(editor != null && psiFile instanceof GoFile);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            return;
+        }
+        Editor editor = event.getData(CommonDataKeys.EDITOR);
+        PsiFile psiFile = event.getData(CommonDataKeys.PSI_FILE);
+        if (editor == null || !(psiFile instanceof GoFile goFile)) {
+            GoStructCopyAction.notify(project, "This action is available only inside Go files.", NotificationType.WARNING);
+            return;
+        }
+
+        GoStructCopyProcessor processor = GoStructCopyProcessor.forProject(project, GoStructCopySettings.getInstance(project).getOptions());
+        int offset = editor.getCaretModel().getOffset();
+        ApplicationManager.getApplication().runReadAction(() -> {
+            GoTypeSpec spec = processor.findTypeSpecAtCaret(goFile, offset);
+            if (spec == null) {
+                GoStructCopyAction.notify(project, GoStructCopyProcessor.NOT_FOUND_ERROR, NotificationType.WARNING);
+                return;
+            }
+            GoStructTreePopup.show(project, editor, processor, spec, result -> copy(project, result));
+        });
+    }
+
+    private static void copy(@NotNull Project project, @NotNull GoStructCopyResult result) {
+        if (!result.success()) {
+            GoStructCopyAction.notify(project, result.message(), NotificationType.WARNING);
+            return;
+        }
+        String content = result.content();
+        if (content == null || content.isEmpty()) {
+            GoStructCopyAction.notify(project, "Nothing to copy.", NotificationType.INFORMATION);
+            return;
+        }
+        GoStructCopyAction.copyToClipboard(content);
+        GoStructCopyAction.notify(project, result.message(), NotificationType.INFORMATION);
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
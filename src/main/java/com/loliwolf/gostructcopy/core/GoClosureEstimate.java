@@ -0,0 +1,14 @@
+package com.loliwolf.gostructcopy.core;
+
+/**
+ * How many type specs an expansion would pull in, counted by {@link GoStructCopyProcessor#estimateClosure} without
+ * naming or rendering anything.
+ *
+ * @param typeCount           the number of specs reached, the root included; a lower bound when {@code truncated}
+ * @param truncated           whether counting stopped because the limit was exceeded
+ * @param maxDepthWithinLimit when truncated, the largest {@link GoStructCopyOptions#maxDepth()} whose closure stays
+ *                            within the limit, or 0 when none does because the types the root references directly
+ *                            already exceed it; otherwise 0
+ */
+public record GoClosureEstimate(int typeCount, boolean truncated, int maxDepthWithinLimit) {
+}
@@ -0,0 +1,170 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoImportSpec;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.concurrency.CancellablePromise;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Parses the files an expansion is likely to reach before it gets there. The expansion walks its closure one reference
+ * at a time and stalls on every file whose syntax tree is not loaded yet; the files it will visit are predicted from
+ * the import statements of the root's package and of the packages those import, as far as the options let references
+ * be followed, and their trees are loaded nearest first on a small bounded pool, each in its own non-blocking read
+ * action, so the expansion mostly finds them warm.
+ * <p>
+ * Only one round runs at a time: starting another cancels the files the previous one had not parsed yet.
+ */
+@Service(Service.Level.PROJECT)
+public final class GoFilePrefetcher {
+    private static final int MAX_FILES = 256;
+    private static final int MAX_THREADS = 4;
+
+    private final Project project;
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Go Struct Prefetch",
+            Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() / 2)));
+    private final List<CancellablePromise<?>> round = new ArrayList<>();
+    // Counts the rounds started or cancelled, so that a prediction finishing late cannot load into a later round
+    private long generation;
+
+    public GoFilePrefetcher(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static GoFilePrefetcher getInstance(@NotNull Project project) {
+        return project.getService(GoFilePrefetcher.class);
+    }
+
+    /**
+     * Starts parsing the files the expansion of {@code root} is predicted to visit, cancelling the previous round.
+     */
+    public void prefetch(@NotNull GoTypeSpec root, @NotNull GoStructCopyOptions options) {
+        synchronized (round) {
+            cancelRound();
+            long started = generation;
+            CancellablePromise<List<VirtualFile>> prediction = ReadAction.nonBlocking(
+                            () -> root.isValid() ? predictFiles(root, options) : List.<VirtualFile>of())
+                    .expireWith(project)
+                    .submit(executor);
+            round.add(prediction);
+            prediction.onSuccess(files -> load(started, files));
+        }
+    }
+
+    /**
+     * Cancels what is left of the running round, once the expansion it was started for is over.
+     */
+    public void cancel() {
+        synchronized (round) {
+            cancelRound();
+        }
+    }
+
+    private void cancelRound() {
+        generation++;
+        for (CancellablePromise<?> promise : round) {
+            promise.cancel();
+        }
+        round.clear();
+    }
+
+    private void load(long started, @NotNull List<VirtualFile> files) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        synchronized (round) {
+            if (started != generation) {
+                // Cancelled or superseded while the prediction was finishing
+                return;
+            }
+            for (VirtualFile file : files) {
+                round.add(ReadAction.nonBlocking(() -> loadTree(psiManager, file))
+                        .expireWith(project)
+                        .submit(executor));
+            }
+        }
+    }
+
+    private static void loadTree(@NotNull PsiManager psiManager, @NotNull VirtualFile file) {
+        if (file.isValid() && psiManager.findFile(file) instanceof PsiFileImpl fileImpl && fileImpl.getTreeElement() == null) {
+            fileImpl.getNode();
+        }
+    }
+
+    /**
+     * The Go files of the root's package and of the packages reachable from it through imports, breadth first, one
+     * import counting as one reference; only packages the expansion may enter are followed. The root's own file is left
+     * out, it is loaded already.
+     */
+    @NotNull
+    private List<VirtualFile> predictFiles(@NotNull GoTypeSpec root, @NotNull GoStructCopyOptions options) {
+        PsiFile rootFile = root.getContainingFile();
+        VirtualFile rootVirtualFile = rootFile != null ? rootFile.getVirtualFile() : null;
+        VirtualFile rootDirectory = rootVirtualFile != null ? rootVirtualFile.getParent() : null;
+        if (rootDirectory == null) {
+            return List.of();
+        }
+        PsiManager psiManager = PsiManager.getInstance(project);
+        GoModuleLayout moduleLayout = new GoModuleLayout();
+        List<VirtualFile> result = new ArrayList<>();
+        Set<VirtualFile> seen = new HashSet<>();
+        Queue<PackageDirectory> queue = new ArrayDeque<>();
+        seen.add(rootDirectory);
+        queue.add(new PackageDirectory(rootDirectory, 0));
+        while (!queue.isEmpty() && result.size() < MAX_FILES) {
+            PackageDirectory current = queue.remove();
+            for (VirtualFile child : current.directory().getChildren()) {
+                ProgressManager.checkCanceled();
+                if (child.isDirectory() || !"go".equals(child.getExtension()) || GoPackageSymbols.isTestFile(child.getName())
+                        || !(psiManager.findFile(child) instanceof GoFile goFile)) {
+                    continue;
+                }
+                if (!child.equals(rootVirtualFile) && result.size() < MAX_FILES) {
+                    result.add(child);
+                }
+                if (options.expandsReferencesAt(current.depth())) {
+                    enqueueImports(goFile, current, options, moduleLayout, seen, queue);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void enqueueImports(@NotNull GoFile file,
+                                       @NotNull PackageDirectory current,
+                                       @NotNull GoStructCopyOptions options,
+                                       @NotNull GoModuleLayout moduleLayout,
+                                       @NotNull Set<VirtualFile> seen,
+                                       @NotNull Queue<PackageDirectory> queue) {
+        for (GoImportSpec importSpec : file.getImports()) {
+            String path = importSpec.getPath();
+            // The standard library is never expanded
+            if (importSpec.isForSideEffects() || !path.contains(".") || !options.packageFilter().accepts(path)) {
+                continue;
+            }
+            VirtualFile directory = moduleLayout.findPackage(current.directory(), path);
+            if (directory != null && seen.add(directory)) {
+                queue.add(new PackageDirectory(directory, current.depth() + 1));
+            }
+        }
+    }
+
+    private record PackageDirectory(@NotNull VirtualFile directory, int depth) {
+    }
+}
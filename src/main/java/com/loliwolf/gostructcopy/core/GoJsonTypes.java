@@ -0,0 +1,197 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.FieldDefinition;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.StructDefinition;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How {@code encoding/json} sees the definitions of an expansion, for the emitters of JSON-based formats. Works on the
+ * rendered type text of the fields: once named, it only refers to listed definitions, to types of packages that were
+ * not expanded, and to predeclared types. Types JSON cannot describe more closely, such as interfaces and types of
+ * packages that were not expanded, become {@link Kind#ANY}.
+ */
+final class GoJsonTypes {
+    private static final Set<String> INTEGERS = Set.of("int", "int8", "int16", "int32", "int64", "uint", "uint8",
+            "uint16", "uint32", "uint64", "uintptr", "byte", "rune");
+
+    private GoJsonTypes() {
+    }
+
+    enum Kind {BOOLEAN, INTEGER, NUMBER, STRING, DATE_TIME, ANY, ARRAY, MAP, REFERENCE}
+
+    /**
+     * @param element the element type of arrays and the value type of maps; map keys are always strings in JSON
+     * @param name    the referenced definition
+     */
+    record JsonType(@NotNull Kind kind, @Nullable JsonType element, @Nullable String name) {
+    }
+
+    /**
+     * A member of the JSON object of a struct.
+     *
+     * @param key      the JSON key, {@code null} for an embedded struct whose fields are promoted into the object; its
+     *                 type is then a {@link Kind#REFERENCE}
+     * @param optional whether the key may be missing, for {@code omitempty} fields
+     */
+    record JsonMember(@Nullable String key, @NotNull JsonType type, boolean optional) {
+    }
+
+    @NotNull
+    static Map<String, StructDefinition> byName(@NotNull List<StructDefinition> definitions) {
+        Map<String, StructDefinition> result = new HashMap<>(definitions.size() * 4 / 3 + 1);
+        for (StructDefinition definition : definitions) {
+            result.put(definition.name(), definition);
+        }
+        return result;
+    }
+
+    /**
+     * The members of {@code definition} in field order, without the fields {@code encoding/json} ignores: unexported
+     * ones and those tagged {@code json:"-"}.
+     */
+    @NotNull
+    static List<JsonMember> members(@NotNull StructDefinition definition, @NotNull Map<String, StructDefinition> definitions) {
+        List<JsonMember> result = new ArrayList<>(definition.fields().size());
+        for (FieldDefinition field : definition.fields()) {
+            String tag = jsonTag(field.tag());
+            if ("-".equals(tag)) {
+                continue;
+            }
+            String[] options = tag != null ? tag.split(",", -1) : new String[]{""};
+            String key = options[0];
+            boolean optional = false;
+            boolean quoted = false;
+            for (int i = 1; i < options.length; i++) {
+                optional |= options[i].equals("omitempty") || options[i].equals("omitzero");
+                quoted |= options[i].equals("string");
+            }
+
+            String name = field.name();
+            if (field.isEmbedded()) {
+                String typeName = withoutPointers(field.type());
+                StructDefinition embedded = definitions.get(typeName);
+                if (key.isEmpty() && embedded != null && !embedded.isTypeAlias()) {
+                    result.add(new JsonMember(null, new JsonType(Kind.REFERENCE, null, typeName), false));
+                    continue;
+                }
+                name = typeName.substring(typeName.lastIndexOf('.') + 1);
+            }
+            if (name == null || name.isEmpty() || !Character.isUpperCase(name.charAt(0))) {
+                continue;
+            }
+            JsonType type = quoted ? new JsonType(Kind.STRING, null, null) : parse(field.type(), definitions);
+            result.add(new JsonMember(key.isEmpty() ? name : key, type, optional));
+        }
+        return result;
+    }
+
+    /**
+     * The content of the {@code json} key of a field tag as rendered by the processor, e.g. {@code name,omitempty}.
+     */
+    @Nullable
+    private static String jsonTag(@Nullable String tag) {
+        if (tag == null) {
+            return null;
+        }
+        int start = tag.indexOf("json:\"");
+        if (start < 0) {
+            start = tag.indexOf("json=\"");
+        }
+        if (start < 0) {
+            return null;
+        }
+        start += "json:\"".length();
+        int end = tag.indexOf('"', start);
+        return end < 0 ? null : tag.substring(start, end);
+    }
+
+    /**
+     * The JSON shape of the Go type {@code text}. Pointers are looked through, since JSON has no notion of them.
+     */
+    @NotNull
+    static JsonType parse(@NotNull String text, @NotNull Map<String, StructDefinition> definitions) {
+        String type = withoutPointers(text.trim());
+        if (type.equals("[]byte") || type.equals("[]uint8")) {
+            // Encoded as a base64 string
+            return new JsonType(Kind.STRING, null, null);
+        }
+        if (type.startsWith("map[")) {
+            int keyEnd = closingBracket(type, 3);
+            return new JsonType(Kind.MAP, parse(type.substring(keyEnd + 1), definitions), null);
+        }
+        if (type.startsWith("[")) {
+            int lengthEnd = closingBracket(type, 0);
+            return new JsonType(Kind.ARRAY, parse(type.substring(lengthEnd + 1), definitions), null);
+        }
+        if (type.equals("bool")) {
+            return new JsonType(Kind.BOOLEAN, null, null);
+        }
+        if (type.equals("string")) {
+            return new JsonType(Kind.STRING, null, null);
+        }
+        if (INTEGERS.contains(type)) {
+            return new JsonType(Kind.INTEGER, null, null);
+        }
+        if (type.equals("float32") || type.equals("float64") || type.equals("json.Number")) {
+            return new JsonType(Kind.NUMBER, null, null);
+        }
+        if (type.equals("time.Time")) {
+            return new JsonType(Kind.DATE_TIME, null, null);
+        }
+        if (definitions.containsKey(type)) {
+            return new JsonType(Kind.REFERENCE, null, type);
+        }
+        return new JsonType(Kind.ANY, null, null);
+    }
+
+    @NotNull
+    private static String withoutPointers(@NotNull String type) {
+        int start = 0;
+        while (start < type.length() && type.charAt(start) == '*') {
+            start++;
+        }
+        return type.substring(start);
+    }
+
+    /**
+     * The index of the bracket closing the one at {@code open}, or the last index when unbalanced.
+     */
+    private static int closingBracket(@NotNull String text, int open) {
+        int depth = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return text.length() - 1;
+    }
+
+    /**
+     * {@code value} as a JSON string literal.
+     */
+    @NotNull
+    static String quote(@NotNull String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
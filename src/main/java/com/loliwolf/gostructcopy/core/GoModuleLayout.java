@@ -0,0 +1,70 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Locates the directory of an imported package from the {@code go.mod} of the enclosing module alone, without the
+ * IDE's indexes: inside the module when the import path starts with its module path, otherwise in its {@code vendor}
+ * directory. Packages of other modules are not found.
+ * <p>
+ * Module paths are read once per instance; an instance should not outlive the state it was used for.
+ */
+final class GoModuleLayout {
+    // Module path by module root, empty when go.mod declares none
+    private final Map<VirtualFile, Optional<String>> modulePaths = new ConcurrentHashMap<>();
+
+    /**
+     * The directory of the package imported as {@code importPath} from a file in {@code directory}.
+     */
+    @Nullable
+    VirtualFile findPackage(@NotNull VirtualFile directory, @NotNull String importPath) {
+        VirtualFile root = directory;
+        while (root != null && root.findChild("go.mod") == null) {
+            root = root.getParent();
+        }
+        if (root == null) {
+            return null;
+        }
+        String modulePath = modulePaths.computeIfAbsent(root, GoModuleLayout::readModulePath).orElse(null);
+        VirtualFile result;
+        if (modulePath != null && importPath.equals(modulePath)) {
+            result = root;
+        } else if (modulePath != null && importPath.startsWith(modulePath + "/")) {
+            result = root.findFileByRelativePath(importPath.substring(modulePath.length() + 1));
+        } else {
+            result = root.findFileByRelativePath("vendor/" + importPath);
+        }
+        return result != null && result.isDirectory() ? result : null;
+    }
+
+    @NotNull
+    private static Optional<String> readModulePath(@NotNull VirtualFile root) {
+        VirtualFile goMod = root.findChild("go.mod");
+        if (goMod == null) {
+            return Optional.empty();
+        }
+        try {
+            String text = new String(goMod.contentsToByteArray(), StandardCharsets.UTF_8);
+            for (String line : StringUtil.splitByLines(text)) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith("module ") || trimmed.startsWith("module\t")) {
+                    String path = trimmed.substring("module".length());
+                    int comment = path.indexOf("//");
+                    return Optional.of(StringUtil.unquoteString((comment >= 0 ? path.substring(0, comment) : path).trim()));
+                }
+            }
+        } catch (IOException ignored) {
+            // Treated like a module without a path: only vendored packages are found
+        }
+        return Optional.empty();
+    }
+}
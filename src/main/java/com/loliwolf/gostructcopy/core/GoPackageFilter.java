@@ -0,0 +1,155 @@
+package com.loliwolf.gostructcopy.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which packages take part in an expansion, based on include and exclude patterns over import paths.
+ * <p>
+ * A pattern must match the whole import path; {@code *} matches any run of characters, including {@code /}. For
+ * example {@code *}{@code /pkg/common/*} matches every package below a {@code pkg/common} directory and {@code *pb}
+ * matches every package whose path ends in {@code pb}. A package is accepted when it matches one of the include
+ * patterns (or there are none) and none of the exclude patterns.
+ * <p>
+ * The patterns of each list are compiled into a single trie-shaped automaton, so a lookup walks the import path once
+ * regardless of the number of patterns; decisions are additionally memoized per import path.
+ */
+public final class GoPackageFilter {
+    public static final GoPackageFilter ALLOW_ALL = compile(List.of(), List.of());
+
+    private final Automaton includes;
+    private final Automaton excludes;
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+    private GoPackageFilter(@NotNull Automaton includes, @NotNull Automaton excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Blank patterns are ignored, surrounding whitespace is trimmed.
+     */
+    @NotNull
+    public static GoPackageFilter compile(@NotNull Collection<String> includePatterns, @NotNull Collection<String> excludePatterns) {
+        return new GoPackageFilter(Automaton.compile(includePatterns), Automaton.compile(excludePatterns));
+    }
+
+    public boolean accepts(@NotNull String importPath) {
+        return decisions.computeIfAbsent(importPath,
+                path -> (includes.isEmpty() || includes.matches(path)) && !excludes.matches(path));
+    }
+
+    public boolean isAllowAll() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * Nondeterministic automaton whose states form a trie over the pattern characters. A {@code *} becomes a state
+     * with a self-loop that is also entered without consuming input, so patterns sharing a prefix share their states.
+     */
+    private static final class Automaton {
+        private final List<State> states = new ArrayList<>();
+
+        @NotNull
+        static Automaton compile(@NotNull Collection<String> patterns) {
+            Automaton automaton = new Automaton();
+            State root = automaton.newState(false);
+            for (String raw : patterns) {
+                String pattern = raw.trim();
+                if (pattern.isEmpty()) {
+                    continue;
+                }
+                State current = root;
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    if (c == '*') {
+                        if (current.wildcard) {
+                            continue;
+                        }
+                        if (current.star == null) {
+                            current.star = automaton.newState(true);
+                        }
+                        current = current.star;
+                    } else {
+                        State next = current.children.get(c);
+                        if (next == null) {
+                            next = automaton.newState(false);
+                            current.children.put(c, next);
+                        }
+                        current = next;
+                    }
+                }
+                current.accepting = true;
+            }
+            return automaton;
+        }
+
+        boolean isEmpty() {
+            return states.size() == 1;
+        }
+
+        boolean matches(@NotNull String text) {
+            if (isEmpty()) {
+                return false;
+            }
+            BitSet active = new BitSet(states.size());
+            enter(states.get(0), active);
+            for (int i = 0; i < text.length() && !active.isEmpty(); i++) {
+                char c = text.charAt(i);
+                BitSet next = new BitSet(states.size());
+                for (int id = active.nextSetBit(0); id >= 0; id = active.nextSetBit(id + 1)) {
+                    State state = states.get(id);
+                    if (state.wildcard) {
+                        next.set(id);
+                    }
+                    State child = state.children.get(c);
+                    if (child != null) {
+                        enter(child, next);
+                    }
+                }
+                active = next;
+            }
+            for (int id = active.nextSetBit(0); id >= 0; id = active.nextSetBit(id + 1)) {
+                if (states.get(id).accepting) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void enter(@NotNull State state, @NotNull BitSet active) {
+            active.set(state.id);
+            if (state.star != null) {
+                // A star may match the empty string
+                active.set(state.star.id);
+            }
+        }
+
+        @NotNull
+        private State newState(boolean wildcard) {
+            State state = new State(states.size(), wildcard);
+            states.add(state);
+            return state;
+        }
+    }
+
+    private static final class State {
+        final int id;
+        final boolean wildcard;
+        final Map<Character, State> children = new HashMap<>();
+        State star;
+        boolean accepting;
+
+        State(int id, boolean wildcard) {
+            this.id = id;
+            this.wildcard = wildcard;
+        }
+    }
+}
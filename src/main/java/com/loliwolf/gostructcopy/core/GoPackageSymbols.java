@@ -0,0 +1,75 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The types declared at package level by the Go files of one directory, read from their parsed PSI without
+ * resolving anything.
+ *
+ * @param types     the first declaration of each name
+ * @param ambiguous names declared more than once, typically by files behind different build constraints
+ */
+record GoPackageSymbols(@NotNull Map<String, GoTypeSpec> types, @NotNull Set<String> ambiguous) {
+
+    /**
+     * @param packageName  the package clause files must have, or {@code null} to accept any
+     * @param includeTests whether {@code _test.go} files are part of the package, as they are for references made from
+     *                     one of them
+     */
+    @NotNull
+    static GoPackageSymbols collect(@NotNull PsiManager psiManager,
+                                    @NotNull VirtualFile directory,
+                                    @Nullable String packageName,
+                                    boolean includeTests) {
+        Map<String, GoTypeSpec> types = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        for (VirtualFile child : directory.getChildren()) {
+            ProgressManager.checkCanceled();
+            if (child.isDirectory() || !"go".equals(child.getExtension())
+                    || (!includeTests && isTestFile(child.getName()))) {
+                continue;
+            }
+            if (psiManager.findFile(child) instanceof GoFile goFile
+                    && (packageName == null || packageName.equals(goFile.getPackageName()))) {
+                for (GoTypeSpec spec : goFile.getTypes()) {
+                    String name = spec.getName();
+                    if (name != null && types.putIfAbsent(name, spec) != null) {
+                        ambiguous.add(name);
+                    }
+                }
+            }
+        }
+        return new GoPackageSymbols(types, ambiguous);
+    }
+
+    static boolean isTestFile(@NotNull String fileName) {
+        return fileName.endsWith("_test.go");
+    }
+
+    /**
+     * The declaration of {@code name}, or {@code null} when there is none or more than one.
+     */
+    @Nullable
+    GoTypeSpec unique(@NotNull String name) {
+        return ambiguous.contains(name) ? null : types.get(name);
+    }
+
+    /**
+     * The first declaration of {@code name}, for callers that prefer some answer to none.
+     */
+    @Nullable
+    GoTypeSpec first(@NotNull String name) {
+        return types.get(name);
+    }
+}
@@ -0,0 +1,124 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Project-wide cache of type reference resolution, keyed by the text of a reference and the scope it appears in rather
+ * than by the PSI element, so that the many occurrences of {@code model.ID} or {@code Timestamp} within a package are
+ * resolved once. Everything is dropped when PSI or the project roots (modules, SDK, dependencies) change.
+ */
+@Service(Service.Level.PROJECT)
+public final class GoResolveCache {
+    private final Project project;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Generation generation = new Generation(-1);
+
+    public GoResolveCache(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static GoResolveCache getInstance(@NotNull Project project) {
+        return project.getService(GoResolveCache.class);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The cached state for the current modification stamps; a stale generation is simply replaced.
+     */
+    @NotNull
+    Generation current() {
+        // Both counters only grow, so their sum changes whenever either does
+        long stamp = PsiModificationTracker.getInstance(project).getModificationCount()
+                + ProjectRootModificationTracker.getInstance(project).getModificationCount();
+        Generation current = generation;
+        if (current.stamp != stamp) {
+            current = new Generation(stamp);
+            generation = current;
+        }
+        return current;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    static final class Generation {
+        private final long stamp;
+        private final Map<ResolveKey, Optional<GoTypeSpec>> specs = new ConcurrentHashMap<>();
+        private final Map<PsiFile, FileScope> files = new ConcurrentHashMap<>();
+        private final Map<String, GoPackageSymbols> packages = new ConcurrentHashMap<>();
+
+        Generation(long stamp) {
+            this.stamp = stamp;
+        }
+
+        /**
+         * @return {@code null} when the key is unknown, an empty optional when it is known not to resolve
+         */
+        @Nullable
+        Optional<GoTypeSpec> get(@NotNull ResolveKey key) {
+            return specs.get(key);
+        }
+
+        void put(@NotNull ResolveKey key, @Nullable GoTypeSpec spec) {
+            specs.put(key, Optional.ofNullable(spec));
+        }
+
+        @NotNull
+        Map<PsiFile, FileScope> files() {
+            return files;
+        }
+
+        /**
+         * Package symbol tables by {@link FileScope#packageKey()}, with a {@code :test} suffix for those including
+         * test files.
+         */
+        @NotNull
+        Map<String, GoPackageSymbols> packages() {
+            return packages;
+        }
+    }
+
+    /**
+     * @param packageKey the directory and package name of the referencing file
+     * @param importPath the import path behind the qualifier, empty for unqualified references
+     * @param name       the referenced type name
+     */
+    record ResolveKey(@NotNull String packageKey, @NotNull String importPath, @NotNull String name) {
+    }
+
+    /**
+     * What a file contributes to resolving its references.
+     *
+     * @param packageKey    see {@link ResolveKey#packageKey()}, {@code null} for files outside the VFS
+     * @param imports       import paths by the name they are referred to with
+     * @param hasDotImports whether unqualified names may also come from imported packages
+     */
+    record FileScope(@Nullable String packageKey, @NotNull Map<String, String> imports, boolean hasDotImports) {
+    }
+}
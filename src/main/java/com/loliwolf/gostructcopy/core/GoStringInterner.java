@@ -0,0 +1,52 @@
+package com.loliwolf.gostructcopy.core;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Makes equal field names, type texts and tags of one expansion share a single {@code String}. Large closures repeat the
+ * same few of them ({@code string}, {@code int64}, {@code *time.Time}, {@code json:"id"}) tens of thousands of times,
+ * each freshly built from PSI, and keep them for both build passes. The predeclared types and their most common
+ * pointer, slice and map forms are shared by all expansions; everything else is shared within the expansion only, so
+ * the table goes away with it.
+ * <p>
+ * Not thread-safe, like the collector that owns it.
+ */
+final class GoStringInterner {
+    private static final Map<String, String> COMMON = Stream.of(
+                    "any", "bool", "byte", "comparable", "complex64", "complex128", "error", "float32", "float64",
+                    "int", "int8", "int16", "int32", "int64", "rune", "string", "uint", "uint8", "uint16", "uint32",
+                    "uint64", "uintptr", "interface{}", "struct{}",
+                    "*bool", "*float64", "*int", "*int32", "*int64", "*string", "*uint64",
+                    "[]byte", "[]int", "[]int64", "[]string", "[]interface{}", "[]any",
+                    "map[string]string", "map[string]int", "map[string]interface{}", "map[string]any",
+                    "time.Time", "*time.Time", "time.Duration", "json.RawMessage")
+            .collect(Collectors.toUnmodifiableMap(Function.identity(), Function.identity()));
+
+    private final Map<String, String> strings;
+
+    /**
+     * @param expectedStrings the expected number of distinct strings, used to pre-size the table; 0 when unknown
+     */
+    GoStringInterner(int expectedStrings) {
+        // Load factor 0.75, so that the expected number of entries fits without rehashing
+        this.strings = new HashMap<>(Math.max(16, expectedStrings * 4 / 3 + 1));
+    }
+
+    /**
+     * The instance equal to {@code text} seen first, or {@code text} itself when it is new.
+     */
+    @Nullable
+    String intern(@Nullable String text) {
+        if (text == null) {
+            return null;
+        }
+        String common = COMMON.get(text);
+        return common != null ? common : strings.computeIfAbsent(text, Function.identity());
+    }
+}
@@ -0,0 +1,148 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoTypeReferenceExpression;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Expands many roots at once. The closure is first discovered in parallel on a {@link ForkJoinPool}: every task resolves
+ * the references of one definition in its own short non-blocking read action and forks a task for each spec it is the
+ * first to reach, recording specs in a shared lock-free registry. The collector then runs once over all roots, in root
+ * order, on top of the resolved references; naming stays sequential, so the output is the same as for a sequential run.
+ * <p>
+ * The read actions give way to write actions and start over after them, so the resolved references can outlive the
+ * PSI they were made from; the processor drops those that are no longer valid. While a write action is pending, the
+ * tasks block in their read actions, so the pool should belong to the batch rather than be shared, like
+ * {@link ForkJoinPool#commonPool()}.
+ * <p>
+ * Must not be called inside a read action.
+ */
+public final class GoStructBatchExpander {
+    private final GoStructCopyOptions options;
+    private final ForkJoinPool pool;
+    private final ProgressIndicator indicator;
+    private final Map<GoTypeReferenceExpression, Optional<PsiElement>> resolvedReferences = new ConcurrentHashMap<>();
+    // Every spec reached so far, with the lowest depth it was reached at
+    private final ConcurrentHashMap<GoTypeSpec, Integer> registry = new ConcurrentHashMap<>();
+    private final GoStructCopyProcessor processor;
+
+    public GoStructBatchExpander(@NotNull Project project,
+                                 @NotNull GoStructCopyOptions options,
+                                 @NotNull ForkJoinPool pool,
+                                 @NotNull ProgressIndicator indicator) {
+        this.options = options;
+        this.pool = pool;
+        this.indicator = indicator;
+        this.processor = new GoStructCopyProcessor(options, GoResolveCache.getInstance(project),
+                GoStructStatistics.getInstance(project), resolvedReferences, null);
+    }
+
+    @NotNull
+    public GoStructCopyResult expand(@NotNull List<SmartPsiElementPointer<GoTypeSpec>> roots) {
+        List<GoTypeSpec> specs = read(() -> restore(roots));
+        if (specs.isEmpty()) {
+            return GoStructCopyResult.failure(GoStructCopyProcessor.NOT_FOUND_ERROR);
+        }
+
+        List<DiscoverTask> tasks = new ArrayList<>();
+        for (GoTypeSpec spec : specs) {
+            if (register(spec, 0)) {
+                tasks.add(new DiscoverTask(spec, 0));
+            }
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        indicator.checkCanceled();
+        return read(() -> {
+            List<GoTypeSpec> restored = restore(roots);
+            return restored.isEmpty()
+                    ? GoStructCopyResult.failure(GoStructCopyProcessor.NOT_FOUND_ERROR)
+                    : processor.expandAll(restored);
+        });
+    }
+
+    /**
+     * Runs {@code task} in a read action that is cancelled by pending write actions and restarted after them, and with
+     * the batch when its indicator is cancelled.
+     */
+    private <T> T read(@NotNull Callable<T> task) {
+        return ReadAction.nonBlocking(task).wrapProgress(indicator).executeSynchronously();
+    }
+
+    @NotNull
+    private static List<GoTypeSpec> restore(@NotNull List<SmartPsiElementPointer<GoTypeSpec>> roots) {
+        List<GoTypeSpec> result = new ArrayList<>(roots.size());
+        for (SmartPsiElementPointer<GoTypeSpec> root : roots) {
+            GoTypeSpec spec = root.getElement();
+            if (spec != null) {
+                result.add(spec);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the caller reached {@code spec} first, or at a lower depth than before, and must discover it
+     */
+    private boolean register(@NotNull GoTypeSpec spec, int depth) {
+        while (true) {
+            Integer seen = registry.putIfAbsent(spec, depth);
+            if (seen == null) {
+                return true;
+            }
+            if (seen <= depth) {
+                return false;
+            }
+            if (registry.replace(spec, seen, depth)) {
+                return true;
+            }
+        }
+    }
+
+    private final class DiscoverTask extends RecursiveAction {
+        private final GoTypeSpec spec;
+        private final int depth;
+
+        DiscoverTask(@NotNull GoTypeSpec spec, int depth) {
+            this.spec = spec;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            indicator.checkCanceled();
+            if (!options.expandsReferencesAt(depth)) {
+                return;
+            }
+            List<GoTypeSpec> references = read(
+                    () -> spec.isValid() ? processor.discoverReferences(spec) : List.<GoTypeSpec>of());
+            List<DiscoverTask> next = new ArrayList<>();
+            for (GoTypeSpec reference : references) {
+                if (register(reference, depth + 1)) {
+                    next.add(new DiscoverTask(reference, depth + 1));
+                }
+            }
+            invokeAll(next);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.loliwolf.gostructcopy.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Limits how far {@link GoStructCopyProcessor} follows references.
+ *
+ * @param packageFilter packages whose structs may be expanded; references into other packages are kept as written.
+ *                      Standard library packages are never expanded.
+ * @param maxDepth      how many references away from the root a struct may be to still be expanded, {@code 0} for no
+ *                      limit. With a depth of 1 only the root and the structs it references directly are expanded.
+ */
+public record GoStructCopyOptions(@NotNull GoPackageFilter packageFilter, int maxDepth) {
+    public static final GoStructCopyOptions DEFAULT = new GoStructCopyOptions(GoPackageFilter.ALLOW_ALL, 0);
+
+    /**
+     * Whether a definition at {@code depth} may have its references expanded, the root being at depth 0.
+     */
+    boolean expandsReferencesAt(int depth) {
+        return maxDepth <= 0 || depth < maxDepth;
+    }
+
+    @NotNull
+    public GoStructCopyOptions withMaxDepth(int maxDepth) {
+        return new GoStructCopyOptions(packageFilter, maxDepth);
+    }
+}
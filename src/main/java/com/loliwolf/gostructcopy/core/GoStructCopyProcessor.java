@@ -1,17 +1,27 @@
 package com.loliwolf.gostructcopy.core;
 
 import com.goide.psi.*;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.ResolveState;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.psi.util.PsiTreeUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -20,27 +30,110 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * Builds a textual representation of a Go struct with nested structs flattened into standalone definitions.
  */
 public final class GoStructCopyProcessor {
     private static final String NOT_STRUCT_ERROR = "The selected type is not a struct";
-    private static final String NOT_FOUND_ERROR = "Could not locate a struct type. Place the caret inside a struct declaration.";
+    public static final String NOT_FOUND_ERROR = "Could not locate a struct type. Place the caret inside a struct declaration.";
     private static final String INDENT = "\t";
+    // Rough size of a rendered definition, for pre-sizing output buffers
+    private static final int EXPECTED_DEFINITION_LENGTH = 256;
+
+    private final GoStructCopyOptions options;
+    private final @Nullable GoResolveCache resolveCache;
+    private final @Nullable GoStructStatistics statistics;
+    // Resolved references shared by the tasks of a batch expansion, see GoStructBatchExpander
+    private final @Nullable Map<GoTypeReferenceExpression, Optional<PsiElement>> resolvedReferences;
+    // Stands in for reference resolution while the project is indexing
+    private final @Nullable GoSyntacticResolver syntacticResolver;
+
+    public GoStructCopyProcessor() {
+        this(GoStructCopyOptions.DEFAULT);
+    }
+
+    public GoStructCopyProcessor(@NotNull GoStructCopyOptions options) {
+        this(options, null, null, null, null);
+    }
+
+    /**
+     * @param resolveCache      the project's resolution cache, or {@code null} to resolve every reference
+     * @param statistics        where to record counters and timings, or {@code null} to record nothing
+     * @param syntacticResolver resolves references instead of the IDE while it is indexing; neither the resolution
+     *                          cache nor the result cache is used then, since indexing ends without a PSI change
+     */
+    GoStructCopyProcessor(@NotNull GoStructCopyOptions options,
+                          @Nullable GoResolveCache resolveCache,
+                          @Nullable GoStructStatistics statistics,
+                          @Nullable Map<GoTypeReferenceExpression, Optional<PsiElement>> resolvedReferences,
+                          @Nullable GoSyntacticResolver syntacticResolver) {
+        this.options = options;
+        this.resolveCache = resolveCache;
+        this.statistics = statistics;
+        this.resolvedReferences = resolvedReferences;
+        this.syntacticResolver = syntacticResolver;
+    }
+
+    /**
+     * A processor that shares the project's resolution cache and records into its statistics. While the project is
+     * indexing, it resolves references syntactically instead, see {@link #resolvesSyntactically()}.
+     */
+    @NotNull
+    public static GoStructCopyProcessor forProject(@NotNull Project project, @NotNull GoStructCopyOptions options) {
+        GoSyntacticResolver syntacticResolver = DumbService.isDumb(project) ? new GoSyntacticResolver(project) : null;
+        return new GoStructCopyProcessor(options, GoResolveCache.getInstance(project), GoStructStatistics.getInstance(project),
+                null, syntacticResolver);
+    }
+
+    /**
+     * Like {@link #forProject}, but always resolves references through the IDE. For work that is deferred until
+     * indexing has finished, such as read actions run {@code inSmartMode}, which may be scheduled while the project
+     * is still indexing.
+     */
+    @NotNull
+    public static GoStructCopyProcessor forSmartMode(@NotNull Project project, @NotNull GoStructCopyOptions options) {
+        return new GoStructCopyProcessor(options, GoResolveCache.getInstance(project), GoStructStatistics.getInstance(project),
+                null, null);
+    }
+
+    /**
+     * Whether this processor was created while the project was indexing and resolves references from the package
+     * files alone. Its results may miss definitions, so they should not be kept beyond the current copy.
+     */
+    public boolean resolvesSyntactically() {
+        return syntacticResolver != null;
+    }
+
+    @NotNull
+    public GoStructCopyOptions getOptions() {
+        return options;
+    }
 
     @NotNull
     public GoStructCopyResult expandAtCaret(@NotNull GoFile file, int caretOffset) {
+        GoTypeSpec spec = findTypeSpecAtCaret(file, caretOffset);
+        if (spec == null) {
+            return GoStructCopyResult.failure(NOT_FOUND_ERROR);
+        }
+        return expand(spec);
+    }
+
+    @Nullable
+    public GoTypeSpec findTypeSpecAtCaret(@NotNull GoFile file, int caretOffset) {
         PsiElement element = file.findElementAt(caretOffset);
         if (element == null) {
-            return GoStructCopyResult.failure(NOT_FOUND_ERROR);
+            return null;
         }
 
         GoTypeSpec spec = PsiTreeUtil.getParentOfType(element, GoTypeSpec.class, false);
         if (spec == null) {
             GoTypeReferenceExpression reference = PsiTreeUtil.getParentOfType(element, GoTypeReferenceExpression.class, false);
             if (reference != null) {
-                PsiElement resolved = reference.resolve();
+                PsiElement resolved = resolve(reference);
                 if (resolved instanceof GoTypeSpec resolvedSpec) {
                     spec = resolvedSpec;
                 }
@@ -51,43 +144,740 @@ public final class GoStructCopyProcessor {
             if (compositeLit != null) {
                 GoTypeReferenceExpression reference = compositeLit.getTypeReferenceExpression();
                 if (reference != null) {
-                    PsiElement resolved = reference.resolve();
+                    PsiElement resolved = resolve(reference);
                     if (resolved instanceof GoTypeSpec resolvedSpec) {
                         spec = resolvedSpec;
                     }
                 }
             }
         }
+        return spec;
+    }
 
-        if (spec == null) {
-            return GoStructCopyResult.failure(NOT_FOUND_ERROR);
+    @NotNull
+    public GoStructCopyResult expand(@NotNull GoTypeSpec typeSpec) {
+        return expand(typeSpec, 0);
+    }
+
+    /**
+     * @param expectedTypes the expected number of definitions, for example from {@link #estimateClosure}, used to
+     *                      pre-size the collector; 0 when unknown
+     */
+    @NotNull
+    public GoStructCopyResult expand(@NotNull GoTypeSpec typeSpec, int expectedTypes) {
+        GoStructEvents.Expansion event = new GoStructEvents.Expansion();
+        event.begin();
+        long started = System.nanoTime();
+        String typeName = Optional.ofNullable(typeSpec.getName()).orElse("<anonymous>");
+        DefinitionCollector collector = new DefinitionCollector(null, expectedTypes);
+        enqueueRoot(collector, typeSpec);
+        return complete(collector, event, started, typeName, "Copied struct " + typeName + " to clipboard");
+    }
+
+    /**
+     * Expands several roots into a single listing in which every definition appears once, named consistently across
+     * all roots. Roots are expanded in the given order.
+     */
+    @NotNull
+    public GoStructCopyResult expandAll(@NotNull List<GoTypeSpec> roots) {
+        GoStructEvents.Expansion event = new GoStructEvents.Expansion();
+        event.begin();
+        long started = System.nanoTime();
+        DefinitionCollector collector = new DefinitionCollector(null, roots.size());
+        for (GoTypeSpec root : roots) {
+            enqueueRoot(collector, root);
         }
-        return expand(spec);
+        String rootType = roots.size() + (roots.size() == 1 ? " struct" : " structs");
+        return complete(collector, event, started, rootType, "Copied " + rootType + " to clipboard");
     }
 
+    /**
+     * Like {@link #expand(GoTypeSpec)}, but reuses and fills the project's {@link GoStructResultCache}.
+     */
     @NotNull
-    public GoStructCopyResult expand(@NotNull GoTypeSpec typeSpec) {
-        GoStructType structType = resolveStructType(typeSpec, new HashSet<>());
+    public GoStructCopyResult expandCached(@NotNull GoTypeSpec typeSpec) {
+        return expandCached(typeSpec, 0);
+    }
+
+    @NotNull
+    public GoStructCopyResult expandCached(@NotNull GoTypeSpec typeSpec, int expectedTypes) {
+        if (syntacticResolver != null) {
+            return expand(typeSpec, expectedTypes);
+        }
+        GoStructResultCache cache = GoStructResultCache.getInstance(typeSpec.getProject());
+        GoStructCopyResult cached = cache.get(typeSpec, options);
+        if (statistics != null) {
+            statistics.recordResultCache(cached != null);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = cache.currentStamp();
+        GoStructCopyResult result = expand(typeSpec, expectedTypes);
+        if (result.success()) {
+            cache.put(typeSpec, options, stamp, result);
+        }
+        return result;
+    }
+
+    /**
+     * Expands {@code typeSpec} like {@link #expand(GoTypeSpec)}, but keeps the source spec and the references of every
+     * definition so that the result can later be brought up to date with {@link #refresh(GoStructExpansion, Set)}.
+     */
+    @Nullable
+    public GoStructExpansion expandTracked(@NotNull GoTypeSpec typeSpec) {
+        List<StructDefinition> definitions = collect(typeSpec);
+        if (definitions.isEmpty()) {
+            return null;
+        }
+
+        Map<GoTypeSpec, Integer> indexBySpec = indexBySpec(definitions);
+        List<GoStructExpansion.Entry> entries = new ArrayList<>(definitions.size());
+        for (int i = 0; i < definitions.size(); i++) {
+            StructDefinition definition = definitions.get(i);
+            String text = renderDefinition(definition, i == definitions.size() - 1);
+            GoTypeSpec anchor = definition.source() instanceof GoTypeSpec spec
+                    ? spec
+                    : PsiTreeUtil.getParentOfType(definition.source(), GoTypeSpec.class);
+            SmartPsiElementPointer<GoTypeSpec> pointer = anchor != null ? SmartPointerManager.createPointer(anchor) : null;
+            entries.add(createEntry(definition, text, pointer, indexBySpec));
+        }
         String typeName = Optional.ofNullable(typeSpec.getName()).orElse("<anonymous>");
-        
-        DefinitionCollector collector = new DefinitionCollector();
-        
+        return new GoStructExpansion(SmartPointerManager.createPointer(typeSpec), typeName, entries, allIndices(entries.size()), true);
+    }
+
+    /**
+     * Re-renders the entries of {@code previous} listed in {@code changedEntries} together with the entries that
+     * reference them, reusing the names assigned by the previous expansion. Falls back to a full expansion, reported by
+     * {@link GoStructExpansion#isRebuilt()}, when the edit changed the shape of the closure (new or dropped references,
+     * renamed specs) or reached an anonymous struct. Anonymous structs are listed under their enclosing spec and are not
+     * rebuilt on their own, so any edit to a struct that contains one, or to a type it references, expands everything
+     * again.
+     *
+     * @return the updated expansion, {@code previous} itself when nothing had to be recomputed, or {@code null} when
+     * the root spec no longer exists
+     */
+    @Nullable
+    public GoStructExpansion refresh(@NotNull GoStructExpansion previous, @NotNull Set<Integer> changedEntries) {
+        GoTypeSpec root = previous.getRoot().getElement();
+        if (root == null) {
+            return null;
+        }
+        if (changedEntries.isEmpty()) {
+            return previous;
+        }
+
+        List<GoStructExpansion.Entry> entries = previous.getEntries();
+        List<GoTypeSpec> specs = new ArrayList<>(entries.size());
+        for (GoStructExpansion.Entry entry : entries) {
+            GoTypeSpec spec = entry.spec() != null ? entry.spec().getElement() : null;
+            if (spec == null || (!entry.anonymous() && !Objects.equals(spec.getName(), entry.specName()))) {
+                return expandTracked(root);
+            }
+            specs.add(spec);
+        }
+
+        DefinitionCollector collector = new DefinitionCollector(null);
+        Map<GoTypeSpec, Integer> indexBySpec = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (!entries.get(i).anonymous()) {
+                collector.seedName(specs.get(i), entries.get(i).name());
+                indexBySpec.put(specs.get(i), i);
+            }
+        }
+
+        List<GoStructExpansion.Entry> updated = new ArrayList<>(entries);
+        Set<Integer> changed = new TreeSet<>();
+        for (int index : previous.withDependents(changedEntries)) {
+            GoStructExpansion.Entry entry = entries.get(index);
+            if (entry.anonymous()) {
+                return expandTracked(root);
+            }
+            StructDefinition definition = collector.rebuild(entry.name(), specs.get(index), entry.depth());
+            if (definition == null || definition.isTypeAlias() != entry.typeAlias() || !collector.isSettled()) {
+                return expandTracked(root);
+            }
+            String text = renderDefinition(definition, index == entries.size() - 1);
+            updated.set(index, createEntry(definition, text, entry.spec(), indexBySpec));
+            if (!text.equals(entry.text())) {
+                changed.add(index);
+            }
+        }
+
+        GoStructExpansion result = new GoStructExpansion(previous.getRoot(), previous.getRootName(), updated, changed, false);
+        return result.isConnected() ? result : expandTracked(root);
+    }
+
+    /**
+     * Expands only the part of the closure described by {@code selection}: unselected fields are dropped and structs
+     * that were not selected are referenced by name instead of being expanded.
+     */
+    @NotNull
+    public GoStructCopyResult expandSelection(@NotNull GoTypeSpec typeSpec, @NotNull GoStructSelection selection) {
+        GoStructEvents.Expansion event = new GoStructEvents.Expansion();
+        event.begin();
+        long started = System.nanoTime();
+        String typeName = Optional.ofNullable(typeSpec.getName()).orElse("<anonymous>");
+        DefinitionCollector collector = new DefinitionCollector(selection);
+        enqueueRoot(collector, typeSpec);
+        return complete(collector, event, started, typeName, "Copied struct " + typeName + " to clipboard");
+    }
+
+    /**
+     * Collects the closure of {@code typeSpec} like {@link #expand(GoTypeSpec)}, but leaves the rendering to the caller,
+     * outside the read action: very large closures can then be shown chunk by chunk while the rest is still being
+     * rendered, without holding the read lock against the writes that show them.
+     *
+     * @return {@code null} when {@code typeSpec} is not a struct
+     */
+    @Nullable
+    public GoStructListing collectListing(@NotNull GoTypeSpec typeSpec) {
+        List<StructDefinition> definitions = collect(typeSpec);
+        if (definitions.isEmpty()) {
+            return null;
+        }
+        List<StructDefinition> detached = new ArrayList<>(definitions.size());
+        for (StructDefinition definition : definitions) {
+            detached.add(definition.detached());
+        }
+        return new GoStructListing(Optional.ofNullable(typeSpec.getName()).orElse("<anonymous>"), detached);
+    }
+
+    /**
+     * Expands {@code typeSpec} once and renders the collected definitions in each of {@code formats}, so that several
+     * listings of the same closure cost a single resolve pass.
+     *
+     * @return the listing per format, empty when {@code typeSpec} is not a struct
+     */
+    @NotNull
+    public Map<GoStructFormat, String> expandFormats(@NotNull GoTypeSpec typeSpec, @NotNull Set<GoStructFormat> formats) {
+        List<StructDefinition> definitions = collect(typeSpec);
+        Map<GoStructFormat, String> result = new EnumMap<>(GoStructFormat.class);
+        if (definitions.isEmpty()) {
+            return result;
+        }
+        StructDefinition root = definitions.get(0);
+        for (StructDefinition definition : definitions) {
+            if (definition.source() == typeSpec) {
+                root = definition;
+                break;
+            }
+        }
+        for (GoStructFormat format : formats) {
+            ProgressManager.checkCanceled();
+            result.put(format, format.emitter().emit(definitions, root));
+        }
+        return result;
+    }
+
+    /**
+     * Expands {@code typeSpec} but lists only the definitions whose text changed since {@code snapshot}, which maps
+     * definition names to the hashes of a previous {@link GoStructDelta#hashes()}. The whole closure is still collected,
+     * since a change deep inside it shows in every definition naming the changed type, but references resolve through
+     * the project's caches and only changed definitions are written out.
+     *
+     * @return {@code null} when {@code typeSpec} is not a struct
+     */
+    @Nullable
+    public GoStructDelta expandChanged(@NotNull GoTypeSpec typeSpec, @NotNull Map<String, Long> snapshot) {
+        List<StructDefinition> definitions = collect(typeSpec);
+        if (definitions.isEmpty()) {
+            return null;
+        }
+        Map<String, Long> hashes = new LinkedHashMap<>(definitions.size() * 4 / 3 + 1);
+        StringBuilder content = new StringBuilder();
+        StringBuilder text = new StringBuilder(EXPECTED_DEFINITION_LENGTH);
+        int changed = 0;
+        boolean separate = false;
+        for (StructDefinition definition : definitions) {
+            ProgressManager.checkCanceled();
+            text.setLength(0);
+            renderDefinition(text, definition, true);
+            long hash = contentHash(text);
+            hashes.put(definition.name(), hash);
+            if (!Objects.equals(snapshot.get(definition.name()), hash)) {
+                // Separated like a full listing: a blank line after structs only
+                if (separate) {
+                    content.append('\n');
+                }
+                content.append(text);
+                separate = !definition.isTypeAlias();
+                changed++;
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String name : snapshot.keySet()) {
+            if (!hashes.containsKey(name)) {
+                removed.add(name);
+            }
+        }
+        return new GoStructDelta(content.toString(), hashes, changed, removed);
+    }
+
+    /**
+     * 64-bit FNV-1a of {@code text}; snapshots keep only these, so collisions must be rarer than with
+     * {@link String#hashCode()}.
+     */
+    private static long contentHash(@NotNull CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Runs the collector over its enqueued roots and renders the result, committing {@code event} either way.
+     *
+     * @param started when the expansion started, from {@link System#nanoTime()}
+     */
+    @NotNull
+    private GoStructCopyResult complete(@NotNull DefinitionCollector collector,
+                                        @NotNull GoStructEvents.Expansion event,
+                                        long started,
+                                        @NotNull String rootType,
+                                        @NotNull String message) {
+        List<StructDefinition> definitions = collector.process();
+        String content = definitions.isEmpty() ? null : renderDefinitions(collector, definitions, started);
+        event.end();
+        if (event.shouldCommit()) {
+            event.rootType = rootType;
+            event.typeCount = definitions.size();
+            event.outputBytes = GoStructEvents.utf8Length(content);
+            event.commit();
+        }
+        return content != null ? GoStructCopyResult.success(content, message + getIndexingNote()) : GoStructCopyResult.failure(NOT_STRUCT_ERROR);
+    }
+
+    /**
+     * What the user should know about the expansions this processor did while indexing, such as the references it kept
+     * as written, to append to their messages; empty for processors that resolve through the IDE.
+     */
+    @NotNull
+    public String getIndexingNote() {
+        if (syntacticResolver == null) {
+            return "";
+        }
+        Set<String> unresolved = syntacticResolver.getUnresolved();
+        if (unresolved.isEmpty()) {
+            return " (resolved without indexes)";
+        }
+        return " (indexing in progress; kept as written: " + StringUtil.join(unresolved.stream().limit(5).toList(), ", ")
+                + (unresolved.size() > 5 ? " and " + (unresolved.size() - 5) + " more" : "") + ")";
+    }
+
+    /**
+     * Lists the direct fields of a struct without expanding anything: {@code container} is either a {@link GoTypeSpec}
+     * or an anonymous {@link GoStructType}. Only the references of each field are resolved, to report the structs it
+     * leads to.
+     */
+    @NotNull
+    public List<GoStructField> describeFields(@NotNull PsiElement container) {
+        GoStructType structType = container instanceof GoTypeSpec spec
+                ? resolveStructType(spec, new HashSet<>())
+                : container instanceof GoStructType anonymous ? anonymous : null;
+        List<GoStructField> result = new ArrayList<>();
+        if (structType == null) {
+            return result;
+        }
+        for (GoFieldDeclaration declaration : structType.getFieldDeclarationList()) {
+            String tag = sanitizeJsonTag(declaration.getTag());
+            GoAnonymousFieldDefinition anonymousField = declaration.getAnonymousFieldDefinition();
+            GoType fieldType = anonymousField != null ? anonymousField.getType() : declaration.getType();
+            if (fieldType == null) {
+                continue;
+            }
+            List<GoTypeSpec> nestedSpecs = new ArrayList<>();
+            collectNestedSpecs(fieldType, new HashSet<>(), nestedSpecs);
+            GoStructType anonymousStruct = findAnonymousStruct(fieldType);
+            List<GoFieldDefinition> fieldDefinitions = declaration.getFieldDefinitionList();
+            if (anonymousField != null || fieldDefinitions.isEmpty()) {
+                String key = embeddedFieldKey(fieldType);
+                result.add(new GoStructField(key, null, key, tag, nestedSpecs, anonymousStruct));
+                continue;
+            }
+            for (GoFieldDefinition fieldDefinition : fieldDefinitions) {
+                PsiElement identifier = fieldDefinition.getIdentifier();
+                String name = identifier != null ? identifier.getText() : null;
+                if (!StringUtil.isEmpty(name)) {
+                    result.add(new GoStructField(name, name, fieldType.getText(), tag, nestedSpecs, anonymousStruct));
+                }
+            }
+        }
+        return result;
+    }
+
+    private void collectNestedSpecs(@Nullable GoType type, @NotNull Set<GoTypeSpec> visited, @NotNull List<GoTypeSpec> result) {
+        if (type == null || type instanceof GoStructType) {
+            return;
+        }
+        if (type instanceof GoPointerType pointerType) {
+            collectNestedSpecs(pointerType.getType(), visited, result);
+            return;
+        }
+        if (type instanceof GoArrayOrSliceType arrayType) {
+            collectNestedSpecs(arrayType.getType(), visited, result);
+            return;
+        }
+        if (type instanceof GoMapType mapType) {
+            collectNestedSpecs(mapType.getKeyType(), visited, result);
+            collectNestedSpecs(mapType.getValueType(), visited, result);
+            return;
+        }
+        GoTypeReferenceExpression reference = type.getTypeReferenceExpression();
+        if (reference == null) {
+            return;
+        }
+        PsiElement resolved = resolve(reference);
+        if (resolved instanceof GoTypeSpec spec && shouldExpandSpec(spec) && visited.add(spec)) {
+            if (resolveStructType(spec, new HashSet<>()) != null) {
+                result.add(spec);
+            } else {
+                // Non-struct specs are always copied; look through them for the structs they mention.
+                collectNestedSpecs(spec.getSpecType().getType(), visited, result);
+            }
+        }
+    }
+
+    @Nullable
+    private static GoStructType findAnonymousStruct(@Nullable GoType type) {
+        if (type instanceof GoStructType structType) {
+            return structType;
+        }
+        if (type instanceof GoPointerType pointerType) {
+            return findAnonymousStruct(pointerType.getType());
+        }
+        if (type instanceof GoArrayOrSliceType arrayType) {
+            return findAnonymousStruct(arrayType.getType());
+        }
+        if (type instanceof GoMapType mapType) {
+            return findAnonymousStruct(mapType.getValueType());
+        }
+        return null;
+    }
+
+    @NotNull
+    private static String embeddedFieldKey(@Nullable GoType type) {
+        return type != null ? StringUtil.notNullize(type.getText()) : "";
+    }
+
+    @NotNull
+    private List<StructDefinition> collect(@NotNull GoTypeSpec typeSpec) {
+        return collect(typeSpec, null);
+    }
+
+    @NotNull
+    private List<StructDefinition> collect(@NotNull GoTypeSpec typeSpec, @Nullable GoStructSelection selection) {
+        DefinitionCollector collector = new DefinitionCollector(selection);
+        enqueueRoot(collector, typeSpec);
+        return collector.process();
+    }
+
+    private void enqueueRoot(@NotNull DefinitionCollector collector, @NotNull GoTypeSpec typeSpec) {
+        GoStructType structType = resolveStructType(typeSpec, new HashSet<>());
         if (structType != null) {
             // Handle struct types
-            collector.enqueue(typeName, structType, typeSpec);
+            collector.enqueue(structType, typeSpec, 0);
         } else {
             // Handle type aliases - use enqueueSpec which already handles this case
-            collector.enqueueSpec(typeSpec);
+            collector.enqueueSpec(typeSpec, 0);
         }
-        
-        List<StructDefinition> definitions = collector.process();
-        if (definitions.isEmpty()) {
-            return GoStructCopyResult.failure(NOT_STRUCT_ERROR);
+    }
+
+    /**
+     * Counts the specs reachable from {@code root} under the current options, level by level, without naming or
+     * rendering anything, and stops as soon as more than {@code limit} have been found. Lets callers warn about huge
+     * closures before committing to an expansion.
+     */
+    @NotNull
+    public GoClosureEstimate estimateClosure(@NotNull GoTypeSpec root, int limit) {
+        Set<GoTypeSpec> seen = new HashSet<>();
+        seen.add(root);
+        List<GoTypeSpec> level = List.of(root);
+        int depth = 0;
+        while (!level.isEmpty() && options.expandsReferencesAt(depth)) {
+            List<GoTypeSpec> next = new ArrayList<>();
+            for (GoTypeSpec spec : level) {
+                ProgressManager.checkCanceled();
+                for (GoTypeSpec reference : discoverReferences(spec)) {
+                    if (!seen.add(reference)) {
+                        continue;
+                    }
+                    if (seen.size() > limit) {
+                        // Everything up to the current level fit, the next one does not. A depth limit of 0 means
+                        // none, so when the root's own references overflow no limit fits
+                        return new GoClosureEstimate(seen.size(), true, depth);
+                    }
+                    next.add(reference);
+                }
+            }
+            level = next;
+            depth++;
         }
+        return new GoClosureEstimate(seen.size(), false, 0);
+    }
 
-        String content = renderDefinitions(definitions);
-        String message = "Copied struct " + typeName + " to clipboard";
-        return GoStructCopyResult.success(content, message);
+    /**
+     * Resolves the references of a single definition and returns the specs the collector will expand from it. Used by
+     * {@link GoStructBatchExpander} to resolve a closure in parallel ahead of the sequential collector run.
+     */
+    @NotNull
+    List<GoTypeSpec> discoverReferences(@NotNull GoTypeSpec spec) {
+        List<GoTypeSpec> result = new ArrayList<>();
+        GoStructType structType = resolveStructType(spec, new HashSet<>());
+        if (structType != null) {
+            discoverInStruct(structType, result);
+        } else {
+            discoverInType(spec.getSpecType().getType(), result);
+        }
+        return result;
+    }
+
+    private void discoverInStruct(@NotNull GoStructType structType, @NotNull List<GoTypeSpec> result) {
+        for (GoFieldDeclaration declaration : structType.getFieldDeclarationList()) {
+            GoAnonymousFieldDefinition anonymousField = declaration.getAnonymousFieldDefinition();
+            discoverInType(anonymousField != null ? anonymousField.getType() : declaration.getType(), result);
+        }
+    }
+
+    private void discoverInType(@Nullable GoType type, @NotNull List<GoTypeSpec> result) {
+        if (type == null) {
+            return;
+        }
+        if (type instanceof GoStructType structType) {
+            discoverInStruct(structType, result);
+        } else if (type instanceof GoPointerType pointerType) {
+            discoverInType(pointerType.getType(), result);
+        } else if (type instanceof GoArrayOrSliceType arrayType) {
+            discoverInType(arrayType.getType(), result);
+        } else if (type instanceof GoMapType mapType) {
+            discoverInType(mapType.getKeyType(), result);
+            discoverInType(mapType.getValueType(), result);
+        } else {
+            GoTypeReferenceExpression reference = type.getTypeReferenceExpression();
+            if (reference != null && resolve(reference) instanceof GoTypeSpec spec && shouldExpandSpec(spec)) {
+                result.add(spec);
+            }
+            for (GoType argument : typeArguments(type)) {
+                discoverInType(argument, result);
+            }
+        }
+    }
+
+    @NotNull
+    private static List<GoType> typeArguments(@NotNull GoType type) {
+        GoTypeArguments arguments = type.getTypeArguments();
+        return arguments != null ? arguments.getTypeList() : List.of();
+    }
+
+    @NotNull
+    static List<String> typeParameterNames(@NotNull GoTypeParameters parameters) {
+        List<String> result = new ArrayList<>();
+        for (GoTypeParameterDeclaration declaration : parameters.getTypeParameterDeclarationList()) {
+            for (GoTypeParamDefinition definition : declaration.getTypeParamDefinitionList()) {
+                result.add(definition.getName());
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private PsiElement resolve(@NotNull GoTypeReferenceExpression reference) {
+        if (syntacticResolver != null) {
+            return reference.getContainingFile() instanceof GoFile file
+                    ? syntacticResolver.resolve(reference, fileScope(file))
+                    : null;
+        }
+        if (resolvedReferences == null) {
+            return resolveCached(reference);
+        }
+        Optional<PsiElement> resolved = resolvedReferences.get(reference);
+        // A write action between two read actions of the batch may have invalidated what was resolved before it
+        if (resolved == null || resolved.isPresent() && !resolved.get().isValid()) {
+            // Not computeIfAbsent: resolving can take long and must not block other tasks hashing into the same bin
+            resolved = Optional.ofNullable(resolveCached(reference));
+            resolvedReferences.put(reference, resolved);
+        }
+        return resolved.orElse(null);
+    }
+
+    @Nullable
+    private PsiElement resolveCached(@NotNull GoTypeReferenceExpression reference) {
+        if (resolveCache == null) {
+            return resolveUncached(reference);
+        }
+        GoResolveCache.Generation generation = resolveCache.current();
+        GoTypeSpec local = resolveLocally(reference, generation);
+        if (local != null) {
+            return local;
+        }
+        GoResolveCache.ResolveKey key = resolveKey(reference, generation);
+        if (key == null) {
+            return resolveUncached(reference);
+        }
+        Optional<GoTypeSpec> cached = generation.get(key);
+        if (cached != null && cached.map(PsiElement::isValid).orElse(true)) {
+            resolveCache.recordHit();
+            return cached.orElse(null);
+        }
+        resolveCache.recordMiss();
+        PsiElement resolved = resolveUncached(reference);
+        if (resolved == null || resolved instanceof GoTypeSpec) {
+            generation.put(key, (GoTypeSpec) resolved);
+        }
+        return resolved;
+    }
+
+    @Nullable
+    private PsiElement resolveUncached(@NotNull GoTypeReferenceExpression reference) {
+        if (statistics != null) {
+            statistics.recordResolve();
+        }
+        return reference.resolve();
+    }
+
+    /**
+     * Binds an unqualified reference made from a struct declaration to the type of the same name declared by its own
+     * package, found in a symbol table built once per package from the parsed files, so that self-contained DTO files
+     * need no {@link GoTypeReferenceExpression#resolve()} at all. Returns {@code null}, leaving the reference to global
+     * resolution, for qualified names, names the package does not declare or declares more than once, and wherever
+     * something else could shadow the package scope: local types, type parameters and dot imports.
+     */
+    @Nullable
+    private GoTypeSpec resolveLocally(@NotNull GoTypeReferenceExpression reference,
+                                      @NotNull GoResolveCache.Generation generation) {
+        if (reference.getQualifier() != null || !(reference.getContainingFile() instanceof GoFile file)) {
+            return null;
+        }
+        String name = reference.getIdentifier().getText();
+        GoTypeSpec enclosing = PsiTreeUtil.getParentOfType(reference, GoTypeSpec.class);
+        if (StringUtil.isEmpty(name) || enclosing == null || enclosing.getTypeParameters() != null
+                || PsiTreeUtil.getParentOfType(reference, GoBlock.class) != null) {
+            return null;
+        }
+        GoResolveCache.FileScope scope = generation.files().computeIfAbsent(file, GoStructCopyProcessor::computeFileScope);
+        VirtualFile virtualFile = file.getVirtualFile();
+        if (scope.packageKey() == null || scope.hasDotImports() || virtualFile == null || virtualFile.getParent() == null) {
+            return null;
+        }
+        boolean includeTests = GoPackageSymbols.isTestFile(file.getName());
+        String packageKey = includeTests ? scope.packageKey() + ":test" : scope.packageKey();
+        GoPackageSymbols symbols = generation.packages().get(packageKey);
+        if (symbols == null) {
+            // Not computeIfAbsent: parsing a package can take long and must not block other packages hashing alike
+            symbols = GoPackageSymbols.collect(PsiManager.getInstance(file.getProject()), virtualFile.getParent(),
+                    file.getPackageName(), includeTests);
+            GoPackageSymbols previous = generation.packages().putIfAbsent(packageKey, symbols);
+            symbols = previous != null ? previous : symbols;
+        }
+        GoTypeSpec spec = symbols.unique(name);
+        return spec != null && spec.isValid() ? spec : null;
+    }
+
+    /**
+     * The text-based cache key of {@code reference}, or {@code null} where the text alone does not determine the
+     * target: inside function bodies (local types), inside generic types (type parameters), and for unqualified names
+     * in files with dot imports.
+     */
+    @Nullable
+    private GoResolveCache.ResolveKey resolveKey(@NotNull GoTypeReferenceExpression reference,
+                                                 @NotNull GoResolveCache.Generation generation) {
+        String name = reference.getIdentifier().getText();
+        if (StringUtil.isEmpty(name) || !(reference.getContainingFile() instanceof GoFile file)) {
+            return null;
+        }
+        if (PsiTreeUtil.getParentOfType(reference, GoBlock.class) != null) {
+            return null;
+        }
+        GoTypeSpec enclosing = PsiTreeUtil.getParentOfType(reference, GoTypeSpec.class);
+        if (enclosing != null && enclosing.getTypeParameters() != null) {
+            return null;
+        }
+        GoResolveCache.FileScope scope = generation.files().computeIfAbsent(file, GoStructCopyProcessor::computeFileScope);
+        if (scope.packageKey() == null) {
+            return null;
+        }
+        GoTypeReferenceExpression qualifier = reference.getQualifier();
+        if (qualifier == null) {
+            return scope.hasDotImports() ? null : new GoResolveCache.ResolveKey(scope.packageKey(), "", name);
+        }
+        String importPath = scope.imports().get(qualifier.getText());
+        return importPath != null ? new GoResolveCache.ResolveKey(scope.packageKey(), importPath, name) : null;
+    }
+
+    @NotNull
+    private GoResolveCache.FileScope fileScope(@NotNull GoFile file) {
+        return resolveCache != null
+                ? resolveCache.current().files().computeIfAbsent(file, GoStructCopyProcessor::computeFileScope)
+                : computeFileScope(file);
+    }
+
+    @NotNull
+    private static GoResolveCache.FileScope computeFileScope(@NotNull PsiFile psiFile) {
+        GoFile file = (GoFile) psiFile;
+        Map<String, String> imports = new HashMap<>();
+        boolean hasDotImports = false;
+        for (GoImportSpec importSpec : file.getImports()) {
+            if (importSpec.isDot()) {
+                hasDotImports = true;
+                continue;
+            }
+            if (importSpec.isForSideEffects()) {
+                continue;
+            }
+            String path = importSpec.getPath();
+            String localName = importSpec.getLocalPackageName();
+            if (StringUtil.isEmpty(localName)) {
+                int slash = path.lastIndexOf('/');
+                localName = slash >= 0 ? path.substring(slash + 1) : path;
+            }
+            if (!StringUtil.isEmpty(path) && !StringUtil.isEmpty(localName)) {
+                imports.put(localName, path);
+            }
+        }
+        VirtualFile virtualFile = file.getVirtualFile();
+        VirtualFile directory = virtualFile != null ? virtualFile.getParent() : null;
+        String packageKey = directory != null ? directory.getPath() + ":" + StringUtil.notNullize(file.getPackageName()) : null;
+        return new GoResolveCache.FileScope(packageKey, imports, hasDotImports);
+    }
+
+    @NotNull
+    private static Map<GoTypeSpec, Integer> indexBySpec(@NotNull List<StructDefinition> definitions) {
+        Map<GoTypeSpec, Integer> result = new HashMap<>();
+        for (int i = 0; i < definitions.size(); i++) {
+            if (definitions.get(i).source() instanceof GoTypeSpec spec) {
+                result.put(spec, i);
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private static Set<Integer> allIndices(int size) {
+        Set<Integer> result = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    @NotNull
+    private static GoStructExpansion.Entry createEntry(@NotNull StructDefinition definition,
+                                                       @NotNull String text,
+                                                       @Nullable SmartPsiElementPointer<GoTypeSpec> spec,
+                                                       @NotNull Map<GoTypeSpec, Integer> indexBySpec) {
+        Set<Integer> dependencies = new TreeSet<>();
+        for (GoTypeSpec reference : definition.references()) {
+            Integer index = indexBySpec.get(reference);
+            if (index != null) {
+                dependencies.add(index);
+            }
+        }
+        boolean anonymous = !(definition.source() instanceof GoTypeSpec);
+        String specName = definition.source() instanceof GoTypeSpec typeSpec ? typeSpec.getName() : null;
+        return new GoStructExpansion.Entry(definition.name(), specName, text, spec, anonymous, definition.isTypeAlias(),
+                definition.depth(), dependencies);
     }
 
     @Nullable
@@ -100,21 +890,19 @@ public final class GoStructCopyProcessor {
         if (directStruct != null) {
             return directStruct;
         }
-        if (type != null) {
-            GoType underlying = type.getUnderlyingType(ResolveState.initial());
-            GoStructType underlyingStruct = findStructLiteral(underlying);
-            if (underlyingStruct != null) {
-                return underlyingStruct;
-            }
-            GoTypeReferenceExpression reference = type.getTypeReferenceExpression();
-            if (reference != null) {
-                PsiElement resolved = reference.resolve();
-                if (resolved instanceof GoTypeSpec otherSpec) {
-                    return resolveStructType(otherSpec, visited);
-                }
+        if (type == null) {
+            return null;
+        }
+        // The reference first: it goes through the resolve cache and the package symbol tables
+        GoTypeReferenceExpression reference = type.getTypeReferenceExpression();
+        if (reference != null && resolve(reference) instanceof GoTypeSpec otherSpec) {
+            GoStructType referencedStruct = resolveStructType(otherSpec, visited);
+            if (referencedStruct != null) {
+                return referencedStruct;
             }
         }
-        return null;
+        // Resolves through the indexes, which are unavailable while indexing
+        return syntacticResolver == null ? findStructLiteral(type.getUnderlyingType(ResolveState.initial())) : null;
     }
 
     @Nullable
@@ -125,38 +913,114 @@ public final class GoStructCopyProcessor {
         return null;
     }
 
-    private String renderDefinitions(@NotNull List<StructDefinition> definitions) {
-        StringBuilder builder = new StringBuilder();
+    /**
+     * Renders a finished expansion and records its statistics.
+     *
+     * @param started when the expansion started, from {@link System#nanoTime()}
+     */
+    @NotNull
+    private String renderDefinitions(@NotNull DefinitionCollector collector, @NotNull List<StructDefinition> definitions, long started) {
+        GoStructEvents.Render event = new GoStructEvents.Render();
+        event.begin();
+        long renderStarted = System.nanoTime();
+        String content = renderDefinitions(definitions);
+        event.end();
+        if (event.shouldCommit()) {
+            event.typeCount = definitions.size();
+            event.outputBytes = GoStructEvents.utf8Length(content);
+            event.commit();
+        }
+        if (statistics != null) {
+            long finished = System.nanoTime();
+            GoStructStatistics.Sample sample = new GoStructStatistics.Sample(finished - started, collector.collectNanos,
+                    collector.namingNanos, collector.finishNanos, finished - renderStarted, definitions.size());
+            statistics.recordExpansion(sample, collector.filesLoaded, collector.conflictRounds);
+        }
+        return content;
+    }
+
+    @NotNull
+    static String renderDefinitions(@NotNull List<StructDefinition> definitions) {
+        StringBuilder builder = new StringBuilder(definitions.size() * EXPECTED_DEFINITION_LENGTH);
         for (int i = 0; i < definitions.size(); i++) {
-            StructDefinition definition = definitions.get(i);
-            
-            if (definition.isTypeAlias()) {
-                // Render type alias
-                builder.append("type ").append(definition.name()).append(" ").append(definition.underlyingType()).append('\n');
-            } else {
-                // Render struct
-                builder.append("type ").append(definition.name()).append(" struct {\n");
-                for (FieldDefinition field : definition.fields()) {
-                    builder.append(INDENT);
-                    if (field.isEmbedded()) {
-                        builder.append(field.type());
-                    } else {
-                        builder.append(field.name()).append(' ').append(field.type());
-                    }
-                    if (field.tag() != null) {
-                        builder.append(' ').append(field.tag());
+            renderDefinition(builder, definitions.get(i), i == definitions.size() - 1);
+        }
+        return builder.toString();
+    }
+
+    @NotNull
+    private static String renderDefinition(@NotNull StructDefinition definition, boolean last) {
+        StringBuilder builder = new StringBuilder();
+        renderDefinition(builder, definition, last);
+        return builder.toString();
+    }
+
+    static void renderDefinition(@NotNull StringBuilder builder, @NotNull StructDefinition definition, boolean last) {
+        if (definition.isTypeAlias()) {
+            // Render type alias
+            builder.append("type ").append(definition.name()).append(" ").append(definition.underlyingType()).append('\n');
+            return;
+        }
+        // Render struct, aligned exactly like gofmt so that pasting does not reformat it
+        builder.append("type ").append(definition.name()).append(" struct {\n");
+        List<FieldDefinition> fields = definition.fields();
+        int[] firstWidths = new int[fields.size()];
+        int[] secondWidths = new int[fields.size()];
+        alignColumn(fields, 0, firstWidths);
+        alignColumn(fields, 1, secondWidths);
+        for (int i = 0; i < fields.size(); i++) {
+            FieldDefinition field = fields.get(i);
+            builder.append(INDENT);
+            int cells = field.cellCount();
+            for (int column = 0; column < cells; column++) {
+                String cell = field.cell(column);
+                builder.append(cell);
+                if (column < cells - 1) {
+                    int width = column == 0 ? firstWidths[i] : secondWidths[i];
+                    for (int padding = width - cellWidth(cell); padding >= 0; padding--) {
+                        builder.append(' ');
                     }
-                    builder.append('\n');
-                }
-                builder.append("}\n");
-                
-                // Add extra line after struct (but not after type alias)
-                if (i < definitions.size() - 1) {
-                    builder.append('\n');
                 }
             }
+            builder.append('\n');
         }
-        return builder.toString();
+        builder.append("}\n");
+
+        // Add extra line after struct (but not after type alias)
+        if (!last) {
+            builder.append('\n');
+        }
+    }
+
+    /**
+     * Computes the width of {@code column} for every field the way gofmt's tabwriter does: the column is aligned over
+     * each run of consecutive fields that have a cell after it, and a field without one ends the run. So an embedded
+     * field without a tag separates the names above it from those below, and the tags of a run only line up while
+     * every field in it has one.
+     */
+    private static void alignColumn(@NotNull List<FieldDefinition> fields, int column, int @NotNull [] widths) {
+        int start = 0;
+        while (start < fields.size()) {
+            if (fields.get(start).cellCount() <= column + 1) {
+                start++;
+                continue;
+            }
+            int end = start;
+            int width = 0;
+            while (end < fields.size() && fields.get(end).cellCount() > column + 1) {
+                width = Math.max(width, cellWidth(fields.get(end).cell(column)));
+                end++;
+            }
+            Arrays.fill(widths, start, end, width);
+            start = end;
+        }
+    }
+
+    /**
+     * The width of a cell as gofmt counts it, in code points.
+     */
+    private static int cellWidth(@NotNull String cell) {
+        return cell.codePointCount(0, cell.length());
     }
 
     private boolean shouldExpandSpec(@NotNull GoTypeSpec spec) {
@@ -164,14 +1028,17 @@ public final class GoStructCopyProcessor {
         if (file instanceof GoFile goFile) {
             String importPath = goFile.getImportPath(true);
             if (!StringUtil.isEmpty(importPath)) {
-                if (!importPath.contains(".")) {
-                    return false;
-                }
+                return shouldExpandPackage(importPath);
             }
         }
         return true;
     }
 
+    private boolean shouldExpandPackage(@NotNull String importPath) {
+        // Standard library packages have no dot in their import path
+        return importPath.contains(".") && options.packageFilter().accepts(importPath);
+    }
+
     private @Nullable String sanitizeJsonTag(@Nullable GoTag tag) {
         if (tag == null) {
             return null;
@@ -201,55 +1068,72 @@ public final class GoStructCopyProcessor {
 
     private final class DefinitionCollector {
         private final ArrayDeque<StructTarget> queue = new ArrayDeque<>();
-        private final LinkedHashMap<String, StructDefinition> definitions = new LinkedHashMap<>();
-        private final Set<String> queuedNames = new HashSet<>();
-        private final Map<String, String> specNameCache = new HashMap<>();
-        private final Map<GoStructType, String> anonymousNames = new HashMap<>();
-        private final Map<String, List<GoTypeSpec>> nameToSpecs = new HashMap<>();
-        private final Set<GoTypeSpec> processedSpecs = new HashSet<>();
-        private int anonymousCounter = 1;
+        private final LinkedHashMap<String, StructDefinition> definitions;
+        private final GoTypeNamer<GoTypeSpec> namer;
+        // Keyed by the struct type, or by the struct type and type arguments inside generic instantiations
+        private final Map<Object, String> anonymousNames = new HashMap<>();
+        private final Map<Instantiation, String> instantiations = new HashMap<>();
+        // Placeholder of every spec added to the namer, or its final name when seeded for a refresh
+        private final Map<GoTypeSpec, String> specNames;
+        private final ArrayDeque<Set<GoTypeSpec>> referenceScopes = new ArrayDeque<>();
+        private final Map<GoTypeSpec, Integer> aliasDepths = new HashMap<>();
+        private final Map<GoFile, GoResolveCache.FileScope> fileScopes = new HashMap<>();
+        // Depth of the definition whose fields are being rendered, see GoStructCopyOptions#maxDepth
+        private int currentDepth = 0;
+        // Type arguments of the generic instantiation whose fields are being rendered, by parameter name
+        private Map<String, TypeArgument> currentTypeArguments = Map.of();
         private boolean isRebuilding = false;
+        private boolean missingNames = false;
+        // Statistics of the last process() run, see GoStructStatistics
+        private final Set<PsiFile> visitedFiles = new HashSet<>();
+        private long collectNanos;
+        private long namingNanos;
+        private long finishNanos;
+        private int filesLoaded;
+        private int conflictRounds;
+        private final @Nullable GoStructSelection selection;
+        // Shares the strings of the definitions, which repeat a lot and are kept by both build passes
+        private final GoStringInterner interner;
 
-        void enqueue(@NotNull String desiredName, @NotNull GoStructType structType, @Nullable GoTypeSpec spec) {
-            System.out.println("DEBUG enqueue: Attempting to enqueue " + desiredName + " (spec: " + (spec != null ? spec.getName() + " from " + getPackagePath(spec) : "null") + ")");
-            
-            // Check if this exact spec is already processed
-            if (spec != null && processedSpecs.contains(spec)) {
-                System.out.println("DEBUG enqueue: Skipping " + desiredName + " - spec already processed");
-                return;
-            }
-            
-            // Check if this struct is already in the queue (by spec only, regardless of name)
-            for (StructTarget target : queue) {
-                if (target.spec() == spec) {
-                    System.out.println("DEBUG enqueue: Skipping " + desiredName + " - spec already in queue as " + target.typeName());
-                    return;
-                }
-            }
-            
-            // Check if there's already a resolved name in the cache
-            String finalName = desiredName;
-            if (spec != null) {
-                String cacheKey = generateCacheKey(desiredName, spec);
-                if (specNameCache.containsKey(cacheKey)) {
-                    finalName = specNameCache.get(cacheKey);
-                    System.out.println("DEBUG enqueue: Using cached resolved name " + finalName + " for " + desiredName);
-                } else {
-                    NameReservation reservation = reserveUniqueName(desiredName, spec);
-                    finalName = reservation.name();
-                }
-            } else {
-                NameReservation reservation = reserveUniqueName(desiredName, spec);
-                finalName = reservation.name();
+        DefinitionCollector(@Nullable GoStructSelection selection) {
+            this(selection, 0);
+        }
+
+        /**
+         * @param expectedTypes the expected number of definitions, used to pre-size the tables; 0 when unknown
+         */
+        DefinitionCollector(@Nullable GoStructSelection selection, int expectedTypes) {
+            this.selection = selection;
+            // Load factor 0.75, so that the expected number of entries fits without rehashing
+            int capacity = Math.max(16, expectedTypes * 4 / 3 + 1);
+            this.definitions = new LinkedHashMap<>(capacity);
+            this.namer = new GoTypeNamer<>(PsiTypeSource.INSTANCE, expectedTypes);
+            this.specNames = new HashMap<>(capacity);
+            this.interner = new GoStringInterner(expectedTypes * 4);
+        }
+
+        /**
+         * Queues the struct declared by {@code spec} under a placeholder for its name, once per spec.
+         *
+         * @return the placeholder, or the seeded name when refreshing
+         */
+        @NotNull
+        String enqueue(@NotNull GoStructType structType, @NotNull GoTypeSpec spec, int depth) {
+            String name = specNames.get(spec);
+            if (name == null) {
+                name = GoTypeNamer.placeholder(namer.add(spec));
+                specNames.put(spec, name);
+                queue.addLast(new StructTarget(name, structType, spec, depth));
             }
-            
-            StructTarget target = new StructTarget(finalName, structType, spec);
-            queue.addLast(target);
-            System.out.println("DEBUG enqueue: Successfully enqueued " + desiredName + " as " + finalName);
+            return name;
         }
 
+        /**
+         * The name to write for a reference to {@code spec}: a placeholder until the names are assigned, or the seeded
+         * name when refreshing. Structs are queued, named non-struct types are built right away.
+         */
         @Nullable
-        String enqueueSpec(@NotNull GoTypeSpec spec) {
+        String enqueueSpec(@NotNull GoTypeSpec spec, int depth) {
             if (!shouldExpandSpec(spec)) {
                 return null;
             }
@@ -257,38 +1141,41 @@ public final class GoStructCopyProcessor {
             if (StringUtil.isEmpty(originalName)) {
                 return null;
             }
-            
-            // 收集同名的类型规格
-            nameToSpecs.computeIfAbsent(originalName, k -> new ArrayList<>()).add(spec);
-            
-            // 暂时使用原始名称，稍后在process方法中处理冲突
-            String cacheKey = generateCacheKey(originalName, spec);
-            if (specNameCache.containsKey(cacheKey)) {
-                String cachedName = specNameCache.get(cacheKey);
-                return cachedName;
+            String known = specNames.get(spec);
+            if (known != null) {
+                return known;
             }
-            
-            specNameCache.put(cacheKey, originalName);
-            
+            if (isRebuilding) {
+                missingNames = true;
+                return originalName;
+            }
+
             GoStructType structType = resolveStructType(spec, new HashSet<>());
             if (structType != null) {
-                enqueue(originalName, structType, spec);
-                return originalName;
+                return enqueue(structType, spec, depth);
             }
 
+            String name = GoTypeNamer.placeholder(namer.add(spec));
+            specNames.put(spec, name);
             GoType specType = spec.getSpecType().getType();
             if (specType == null) {
-                return originalName;
+                return name;
+            }
+            int ownerDepth = currentDepth;
+            Map<String, TypeArgument> ownerTypeArguments = currentTypeArguments;
+            try {
+                definitions.put(name, buildAlias(name, spec, specType, depth));
+            } finally {
+                currentDepth = ownerDepth;
+                currentTypeArguments = ownerTypeArguments;
             }
-            String underlyingTypeName = renderType(specType, originalName, null);
-            StructDefinition definition = StructDefinition.typeAlias(originalName, underlyingTypeName);
-            definitions.put(originalName, definition);
-            return originalName;
+            return name;
         }
 
         @NotNull
         String registerAnonymous(@NotNull GoStructType structType, @NotNull String ownerName, @Nullable String fieldName) {
-            String existing = anonymousNames.get(structType);
+            Object anonymousKey = currentTypeArguments.isEmpty() ? structType : List.of(structType, currentTypeArguments);
+            String existing = anonymousNames.get(anonymousKey);
             if (existing != null) {
                 return existing;
             }
@@ -296,254 +1183,165 @@ public final class GoStructCopyProcessor {
             if (!StringUtil.isEmpty(fieldName)) {
                 baseName = StringUtil.capitalize(fieldName);
             } else {
-                baseName = StringUtil.capitalize(ownerName) + "Anonymous";
+                baseName = StringUtil.capitalize(namer.withDesiredNames(ownerName)) + "Anonymous";
             }
             if (StringUtil.isEmpty(baseName)) {
                 baseName = "Anonymous";
             }
-            NameReservation reservation = reserveUniqueName(baseName, null);
-            String candidate = reservation.name();
-            if (StringUtil.isEmpty(candidate)) {
-                candidate = baseName + anonymousCounter++;
-            }
-            anonymousNames.put(structType, candidate);
-            queue.addLast(new StructTarget(candidate, structType, null));
-            return candidate;
+            String name = GoTypeNamer.placeholder(namer.add(baseName, null));
+            anonymousNames.put(anonymousKey, name);
+            // Anonymous structs are part of their owner and share its depth and type arguments
+            queue.addLast(new StructTarget(name, structType, null, currentDepth, currentTypeArguments));
+            return name;
         }
 
-
-
         @NotNull
         List<StructDefinition> process() {
-            // First pass: build all fields to collect type references
-            Map<String, StructTarget> structTargets = new HashMap<>();
-            
+            long started = System.nanoTime();
+            // First pass: build every definition, with placeholders where the names of definitions go
             while (!queue.isEmpty()) {
+                // Lets non-blocking read actions give way to write actions on large closures
+                ProgressManager.checkCanceled();
                 StructTarget target = queue.removeFirst();
-                // Check if this spec has already been processed, not just the type name
-                if (target.spec() != null && processedSpecs.contains(target.spec())) {
-                    System.out.println("DEBUG process: Skipping already processed spec " + target.spec().getName() + " from " + getPackagePath(target.spec()));
-                    continue;
-                }
-                List<FieldDefinition> fields = buildFields(target);
-                // Use a unique key for each struct to avoid overwrites
-                String uniqueKey = target.spec() != null ? 
-                    generateCacheKey(target.typeName(), target.spec()) : target.typeName();
-                definitions.put(uniqueKey, new StructDefinition(target.typeName(), fields));
-                structTargets.put(uniqueKey, target);
-                
-                // Mark this spec as processed
                 if (target.spec() != null) {
-                    processedSpecs.add(target.spec());
-                    System.out.println("DEBUG process: Marked spec " + target.spec().getName() + " from " + getPackagePath(target.spec()) + " as processed");
+                    recordFile(target.spec().getContainingFile());
                 }
-            }
-            
-            // Second pass: resolve name conflicts after all types are collected
-            resolveNameConflicts();
-            
-            // Third pass: rebuild everything with resolved names
-            isRebuilding = true;
-            LinkedHashMap<String, StructDefinition> newDefinitions = new LinkedHashMap<>();
-            
-            // First, rebuild struct definitions with updated field types
-            for (Map.Entry<String, StructDefinition> entry : definitions.entrySet()) {
-                String uniqueKey = entry.getKey();
-                StructDefinition definition = entry.getValue();
-                if (!definition.isTypeAlias()) {
-                    StructTarget target = structTargets.get(uniqueKey);
-                    if (target != null) {
-                        // Get the resolved name for this struct using the original spec name
-                        String originalSpecName = target.spec() != null ? target.spec().getName() : definition.name();
-                        String cacheKey = generateCacheKey(originalSpecName, target.spec());
-                        String resolvedName = specNameCache.getOrDefault(cacheKey, definition.name());
-                        
-
-                        
-                        // Rebuild fields with updated type names
-                        List<FieldDefinition> updatedFields = buildFields(target);
-                        newDefinitions.put(resolvedName, new StructDefinition(resolvedName, updatedFields));
-                    }
+                GoStructEvents.StructBuild buildEvent = new GoStructEvents.StructBuild();
+                buildEvent.begin();
+                StructDefinition definition = buildDefinition(target);
+                buildEvent.end();
+                if (buildEvent.shouldCommit()) {
+                    buildEvent.typeName = namer.withDesiredNames(target.typeName());
+                    buildEvent.fieldCount = definition.fields().size();
+                    buildEvent.commit();
                 }
+                definitions.put(target.typeName(), definition);
             }
-            
-            // Then, rebuild type alias definitions with resolved names and updated underlying types
-            for (Map.Entry<String, List<GoTypeSpec>> entry : nameToSpecs.entrySet()) {
-                String originalName = entry.getKey();
-                List<GoTypeSpec> specs = entry.getValue();
-                
-                for (GoTypeSpec spec : specs) {
-                    // Check if this is a type alias (not a struct)
-                    GoType specType = spec.getSpecType().getType();
-                    if (specType != null && resolveStructType(spec, new HashSet<>()) == null) {
-                        // This is a type alias
-                        String cacheKey = generateCacheKey(originalName, spec);
-                        String resolvedName = specNameCache.getOrDefault(cacheKey, originalName);
-                        
-                        // Render the underlying type with updated names
-                        String updatedUnderlyingType = renderType(specType, resolvedName, null);
-                        
-                        StructDefinition typeAliasDefinition = StructDefinition.typeAlias(resolvedName, updatedUnderlyingType);
-                        newDefinitions.put(resolvedName, typeAliasDefinition);
-                    }
-                }
+            long collected = System.nanoTime();
+            collectNanos = collected - started;
+
+            // Second pass: name all definitions at once
+            GoStructEvents.ConflictResolution conflictEvent = new GoStructEvents.ConflictResolution();
+            conflictEvent.begin();
+            int conflicts = namer.assign();
+            conflictRounds += conflicts;
+            conflictEvent.end();
+            if (conflictEvent.shouldCommit()) {
+                conflictEvent.typeCount = definitions.size();
+                conflictEvent.conflicts = conflicts;
+                conflictEvent.commit();
             }
-            
-            // Replace the old definitions with the new ones
-            definitions.clear();
-            definitions.putAll(newDefinitions);
-            
-            // Separate struct definitions and type aliases, ensuring structs come first
-            List<StructDefinition> result = new ArrayList<>();
+            long named = System.nanoTime();
+            namingNanos = named - collected;
+
+            // Put the names in place of the placeholders, structs first, in discovery order
+            List<StructDefinition> result = new ArrayList<>(definitions.size());
             List<StructDefinition> typeAliases = new ArrayList<>();
-            
             for (StructDefinition definition : definitions.values()) {
-                if (definition.isTypeAlias()) {
-                    typeAliases.add(definition);
-                } else {
-                    result.add(definition);
-                }
+                StructDefinition finished = definition.withNames(text -> interner.intern(namer.withAssignedNames(text)));
+                (definition.isTypeAlias() ? typeAliases : result).add(finished);
             }
-            
-            // Add type aliases after struct definitions
             result.addAll(typeAliases);
+            finishNanos = System.nanoTime() - named;
             return result;
         }
         
-        private void resolveNameConflicts() {
-            // Group specs by desired name
-            for (Map.Entry<String, List<GoTypeSpec>> entry : nameToSpecs.entrySet()) {
-                String desiredName = entry.getKey();
-                List<GoTypeSpec> specs = entry.getValue();
-                
-                if (specs.size() > 1) {
-                    // Multiple specs with same name - need to resolve conflicts
-                    Set<String> packagePaths = new HashSet<>();
-                    for (GoTypeSpec spec : specs) {
-                        String packagePath = getPackagePath(spec);
-                        packagePaths.add(packagePath);
-                    }
-                    
-                    if (packagePaths.size() > 1) {
-                        // Real conflict - different packages with same type name
-                        System.out.println("DEBUG: Resolving conflict for " + desiredName);
-                        
-                        // Check if any of the specs are type aliases
-                        boolean hasTypeAlias = false;
-                        for (GoTypeSpec spec : specs) {
-                            GoType specType = spec.getSpecType().getType();
-                            if (specType != null && !(specType instanceof GoStructType)) {
-                                hasTypeAlias = true;
-                                break;
-                            }
-                        }
-                        
-                        // Clear related cache entries to force regeneration
-                        for (GoTypeSpec spec : specs) {
-                            String cacheKey = generateCacheKey(desiredName, spec);
-                            specNameCache.remove(cacheKey);
-                        }
-                        
-                        // Remove original name from queuedNames to allow reassignment
-                        queuedNames.remove(desiredName);
-                        
-                        // Generate new names for each conflicting type based on package
-                        boolean isFirst = true;
-                        for (GoTypeSpec spec : specs) {
-                            String packagePath = getPackagePath(spec);
-                            String newName;
-                            
-                            // For type aliases, all get package prefix
-                            // For structs, first keeps original name, others get package prefix
-                            if (hasTypeAlias || !isFirst) {
-                                newName = generatePackageBasedName(desiredName, packagePath);
-                            } else {
-                                newName = desiredName;
-                                isFirst = false;
-                            }
-                            
-                            // Ensure the new name is unique
-                            String finalName = newName;
-                            int suffix = 2;
-                            while (queuedNames.contains(finalName)) {
-                                finalName = newName + suffix++;
-                            }
-                            
-                            queuedNames.add(finalName);
-                            String cacheKey = generateCacheKey(desiredName, spec);
-                            specNameCache.put(cacheKey, finalName);
-                            
-                            // Update queue items with new name
-                            updateQueueWithNewName(desiredName, finalName, spec);
-                            
-                            if (!hasTypeAlias) {
-                                isFirst = false;
-                            }
-                        }
-                    }
-                }
+        /**
+         * Rebuilds a single definition for {@link #refresh(GoStructExpansion, Set)}, resolving references through the
+         * names seeded from the previous expansion.
+         */
+        @Nullable
+        StructDefinition rebuild(@NotNull String name, @NotNull GoTypeSpec spec, int depth) {
+            isRebuilding = true;
+            GoStructType structType = resolveStructType(spec, new HashSet<>());
+            if (structType != null) {
+                return buildDefinition(new StructTarget(name, structType, spec, depth));
             }
-            
-            System.out.println("DEBUG: Final cache after conflict resolution: " + specNameCache);
+            GoType specType = spec.getSpecType().getType();
+            return specType != null ? buildAlias(name, spec, specType, depth) : null;
         }
-        
-        private String generatePackageBasedName(String typeName, String packagePath) {
-            // Extract package name from path (e.g., "example.com/pkg1" -> "pkg1")
-            String packageName = packagePath;
-            if (packagePath.contains("/")) {
-                packageName = packagePath.substring(packagePath.lastIndexOf("/") + 1);
+
+        /**
+         * Counts {@code file} once if its AST was not loaded yet; expanding a definition reads its text, which loads it.
+         */
+        private void recordFile(@Nullable PsiFile file) {
+            if (file != null && visitedFiles.add(file) && file instanceof PsiFileImpl fileImpl && fileImpl.getTreeElement() == null) {
+                filesLoaded++;
             }
-            
-            // Capitalize first letter of package name and append to type name
-            String capitalizedPackage = packageName.substring(0, 1).toUpperCase() + packageName.substring(1);
-            return capitalizedPackage + typeName;
         }
-        
-        private void updateQueueWithNewName(String oldName, String newName, GoTypeSpec spec) {
-            // Find and update queue items that match this spec
-            List<StructTarget> queueList = new ArrayList<>(queue);
-            for (int i = 0; i < queueList.size(); i++) {
-                StructTarget target = queueList.get(i);
-                if (target.spec() == spec && target.typeName().equals(oldName)) {
-                    // Replace the target with updated name at the same position
-                    queue.clear();
-                    queueList.set(i, new StructTarget(newName, target.structType(), target.spec()));
-                    queue.addAll(queueList);
-                    System.out.println("DEBUG updateQueueWithNewName: Updated " + oldName + " to " + newName + " at position " + i);
-                    break;
-                }
+
+        void seedName(@NotNull GoTypeSpec spec, @NotNull String name) {
+            specNames.put(spec, name);
+        }
+
+        /**
+         * Whether every reference seen while rebuilding mapped onto an already named definition.
+         */
+        boolean isSettled() {
+            return queue.isEmpty() && !missingNames;
+        }
+
+        @NotNull
+        private StructDefinition buildDefinition(@NotNull StructTarget target) {
+            Set<GoTypeSpec> references = new HashSet<>();
+            referenceScopes.push(references);
+            try {
+                List<FieldDefinition> fields = buildFields(target);
+                PsiElement source = target.spec() != null ? target.spec() : target.structType();
+                return new StructDefinition(target.typeName(), fields, false, null, source, references, target.depth());
+            } finally {
+                referenceScopes.pop();
+            }
+        }
+
+        @NotNull
+        private StructDefinition buildAlias(@NotNull String name, @NotNull GoTypeSpec spec, @NotNull GoType specType, int depth) {
+            Set<GoTypeSpec> references = new HashSet<>();
+            referenceScopes.push(references);
+            currentDepth = depth;
+            currentTypeArguments = Map.of();
+            try {
+                return StructDefinition.typeAlias(name, internFinal(renderType(specType, name, null)), spec, references, depth);
+            } finally {
+                referenceScopes.pop();
             }
         }
 
         @NotNull
         private List<FieldDefinition> buildFields(@NotNull StructTarget target) {
-            System.out.println("DEBUG buildFields: Processing struct " + target.typeName());
             List<FieldDefinition> result = new ArrayList<>();
             List<GoFieldDeclaration> declarations = target.structType().getFieldDeclarationList();
             if (declarations == null || declarations.isEmpty()) {
-                System.out.println("DEBUG buildFields: No field declarations for " + target.typeName());
                 return result;
             }
             
+            PsiElement container = target.spec() != null ? target.spec() : target.structType();
+            currentDepth = target.depth();
+            currentTypeArguments = target.typeArguments();
             for (GoFieldDeclaration declaration : declarations) {
-                System.out.println("DEBUG buildFields: Processing field declaration in " + target.typeName());
                 GoAnonymousFieldDefinition anonymousField = declaration.getAnonymousFieldDefinition();
                 if (anonymousField != null) {
+                    if (selection != null && !selection.includesField(container, embeddedFieldKey(anonymousField.getType()))) {
+                        continue;
+                    }
                     String typeText = renderType(anonymousField.getType(), target.typeName(), anonymousField.getIdentifier() != null ? anonymousField.getIdentifier().getText() : null);
                     if (!typeText.isEmpty()) {
                         String tag = sanitizeJsonTag(declaration.getTag());
-                        result.add(FieldDefinition.embedded(typeText, tag));
+                        result.add(FieldDefinition.embedded(internFinal(typeText), interner.intern(tag)));
                     }
                     continue;
                 }
 
                 GoType fieldType = declaration.getType();
-                String tag = sanitizeJsonTag(declaration.getTag());
+                String tag = interner.intern(sanitizeJsonTag(declaration.getTag()));
                 List<GoFieldDefinition> fieldDefinitions = declaration.getFieldDefinitionList();
                 if (fieldDefinitions.isEmpty()) {
+                    if (selection != null && !selection.includesField(container, embeddedFieldKey(fieldType))) {
+                        continue;
+                    }
                     String typeText = renderType(fieldType, target.typeName(), null);
                     if (!typeText.isEmpty()) {
-                        result.add(FieldDefinition.embedded(typeText, tag));
+                        result.add(FieldDefinition.embedded(internFinal(typeText), tag));
                     }
                     continue;
                 }
@@ -553,258 +1351,381 @@ public final class GoStructCopyProcessor {
                     if (StringUtil.isEmpty(name)) {
                         continue;
                     }
+                    if (selection != null && !selection.includesField(container, name)) {
+                        continue;
+                    }
                     String typeText = renderType(fieldType, target.typeName(), name);
                     if (typeText.isEmpty()) {
                         continue;
                     }
-                    result.add(FieldDefinition.named(name, typeText, tag));
+                    result.add(FieldDefinition.named(interner.intern(name), internFinal(typeText), tag));
                 }
             }
             return result;
         }
 
+        /**
+         * Interns {@code typeText} unless it still holds placeholders: those texts are replaced once the names are
+         * assigned, and only their final form is interned.
+         */
+        @NotNull
+        private String internFinal(@NotNull String typeText) {
+            return GoTypeNamer.containsPlaceholder(typeText) ? typeText : interner.intern(typeText);
+        }
+
         @NotNull
         private String renderType(@Nullable GoType type, @NotNull String ownerName, @Nullable String fieldName) {
+            StringBuilder builder = new StringBuilder();
+            appendType(builder, type, ownerName, fieldName);
+            return builder.toString();
+        }
+
+        /**
+         * Appends the rendered {@code type} to {@code builder}, following the PSI structure of composite types so that
+         * only the reference token of each named type is rewritten; appends nothing when the type cannot be rendered.
+         */
+        private void appendType(@NotNull StringBuilder builder, @Nullable GoType type, @NotNull String ownerName, @Nullable String fieldName) {
             if (type == null) {
-                return "";
+                return;
             }
             if (type instanceof GoStructType structType) {
-                return registerAnonymous(structType, ownerName, fieldName);
+                builder.append(registerAnonymous(structType, ownerName, fieldName));
+                return;
             }
             if (type instanceof GoPointerType pointerType) {
-                String inner = renderType(pointerType.getType(), ownerName, fieldName);
-                return inner.isEmpty() ? "" : "*" + inner;
+                int start = builder.length();
+                builder.append('*');
+                appendType(builder, pointerType.getType(), ownerName, fieldName);
+                if (builder.length() == start + 1) {
+                    builder.setLength(start);
+                }
+                return;
             }
             if (type instanceof GoArrayOrSliceType arrayType) {
-                String length = Optional.ofNullable(arrayType.getExpression()).map(PsiElement::getText).orElse("");
+                builder.append('[');
                 if (arrayType.getTripleDot() != null) {
-                    length = "...";
+                    builder.append("...");
+                } else if (arrayType.getExpression() != null) {
+                    builder.append(arrayType.getExpression().getText());
                 }
-                String prefix = length.isEmpty() ? "[]" : "[" + length + "]";
-                String inner = renderType(arrayType.getType(), ownerName, fieldName);
-                return prefix + inner;
+                builder.append(']');
+                appendType(builder, arrayType.getType(), ownerName, fieldName);
+                return;
             }
             if (type instanceof GoMapType mapType) {
-                String key = renderType(Objects.requireNonNull(mapType.getKeyType()), ownerName, fieldName);
-                String value = renderType(Objects.requireNonNull(mapType.getValueType()), ownerName, fieldName);
-                if (key.isEmpty()) {
-                    key = "interface{}";
-                }
-                if (value.isEmpty()) {
-                    value = "interface{}";
-                }
-                return "map[" + key + "]" + value;
+                builder.append("map[");
+                appendOrInterface(builder, Objects.requireNonNull(mapType.getKeyType()), ownerName, fieldName);
+                builder.append(']');
+                appendOrInterface(builder, Objects.requireNonNull(mapType.getValueType()), ownerName, fieldName);
+                return;
             }
 
             GoTypeReferenceExpression reference = type.getTypeReferenceExpression();
+            TypeArgument argument = reference != null ? typeArgument(reference, currentTypeArguments) : null;
+            if (argument != null) {
+                Map<String, TypeArgument> ownerTypeArguments = currentTypeArguments;
+                currentTypeArguments = argument.scope();
+                try {
+                    appendType(builder, argument.type(), ownerName, fieldName);
+                } finally {
+                    currentTypeArguments = ownerTypeArguments;
+                }
+                return;
+            }
             if (reference != null) {
-                PsiElement resolved = reference.resolve();
+                // Both limits are checked before resolving, so cut-off subgraphs are never touched
+                if (!options.expandsReferencesAt(currentDepth) || isExcludedByQualifier(reference)) {
+                    builder.append(type.getText());
+                    return;
+                }
+                PsiElement resolved = resolve(reference);
                 if (resolved instanceof GoTypeSpec spec) {
                     // Check if this spec should be expanded
                     if (!shouldExpandSpec(spec)) {
                         // For types that shouldn't be expanded (like Go SDK types), return original text
-                        return type.getText();
+                        builder.append(type.getText());
+                        return;
+                    }
+                    if (selection != null && !selection.includes(spec) && resolveStructType(spec, new HashSet<>()) != null) {
+                        // Structs left out of the selection stay plain references
+                        builder.append(type.getText());
+                        return;
                     }
                     
-                    String assignedName;
-                    if (isRebuilding) {
-                        // During rebuilding, directly look up the resolved name from cache
-                        String cacheKey = generateCacheKey(spec.getName(), spec);
-                        assignedName = specNameCache.getOrDefault(cacheKey, spec.getName());
-                    } else {
-                        assignedName = enqueueSpec(spec);
+                    if (!referenceScopes.isEmpty()) {
+                        referenceScopes.peek().add(spec);
                     }
+
+                    String instantiation = instantiate(spec, type);
+                    if (instantiation != null) {
+                        builder.append(instantiation);
+                        return;
+                    }
+
+                    String assignedName = enqueueSpec(spec, currentDepth + 1);
                     if (!StringUtil.isEmpty(assignedName)) {
-                        String typeText = type.getText();
-                        String specName = spec.getName();
-                        if (StringUtil.isEmpty(typeText) || StringUtil.isEmpty(specName)) {
-                            return assignedName;
-                        }
-                        if (typeText.equals(specName) || typeText.endsWith("." + specName)) {
-                            return assignedName;
-                        }
-                        String replaced = typeText.replace(specName, assignedName);
-                        return StringUtil.isEmpty(replaced) ? assignedName : replaced;
+                        appendRenamed(builder, type, reference, spec, assignedName);
+                        return;
                     }
                 }
-                return type.getText();
             }
 
-            return type.getText();
+            builder.append(type.getText());
         }
 
-        @NotNull
-        private String getPackagePath(@NotNull GoTypeSpec spec) {
-            PsiFile file = spec.getContainingFile();
-            if (file instanceof GoFile goFile) {
-                String importPath = goFile.getImportPath(true);
-                if (!StringUtil.isEmpty(importPath)) {
-                    return importPath;
-                }
+        private void appendOrInterface(@NotNull StringBuilder builder, @NotNull GoType type, @NotNull String ownerName, @Nullable String fieldName) {
+            int start = builder.length();
+            appendType(builder, type, ownerName, fieldName);
+            if (builder.length() == start) {
+                builder.append("interface{}");
             }
-            return "";
         }
 
-        private String generateCacheKey(@NotNull String desiredName, @Nullable GoTypeSpec spec) {
-            if (spec == null) {
-                // 对于匿名结构体，使用特殊的缓存键
-                return "anonymous:" + desiredName;
+        /**
+         * Appends the text of {@code type} with its reference token, qualifier included, replaced by
+         * {@code assignedName}. The token is located by offset, so type arguments and names that merely contain the
+         * spec name (such as {@code UserID} next to {@code User}) are left alone.
+         */
+        private void appendRenamed(@NotNull StringBuilder builder,
+                                   @NotNull GoType type,
+                                   @NotNull GoTypeReferenceExpression reference,
+                                   @NotNull GoTypeSpec spec,
+                                   @NotNull String assignedName) {
+            String typeText = type.getText();
+            if (StringUtil.isEmpty(typeText)) {
+                builder.append(assignedName);
+                return;
             }
-            String specPath = getPackagePath(spec);
-            return specPath + ":" + desiredName + ":" + spec.hashCode();
-        }
-
-        @NotNull
-        private NameReservation reserveUniqueName(@NotNull String desiredName, @Nullable GoTypeSpec spec) {
-            String cacheKey = generateCacheKey(desiredName, spec);
-            String cachedName = specNameCache.get(cacheKey);
-            if (cachedName != null) {
-                return new NameReservation(cachedName, false);
+            TextRange typeRange = type.getTextRange();
+            TextRange referenceRange = reference.getTextRange();
+            if (typeRange != null && referenceRange != null && typeRange.contains(referenceRange)) {
+                int start = referenceRange.getStartOffset() - typeRange.getStartOffset();
+                int end = referenceRange.getEndOffset() - typeRange.getStartOffset();
+                builder.append(typeText, 0, start).append(assignedName).append(typeText, end, typeText.length());
+                return;
+            }
+            // No ranges (light or synthetic PSI): a named type starts with its reference
+            String referenceText = reference.getText();
+            if (!StringUtil.isEmpty(referenceText) && typeText.startsWith(referenceText)) {
+                builder.append(assignedName).append(typeText, referenceText.length(), typeText.length());
+                return;
+            }
+            String specName = spec.getName();
+            if (StringUtil.isEmpty(specName) || typeText.equals(specName) || typeText.endsWith("." + specName)) {
+                builder.append(assignedName);
+                return;
             }
+            appendWithIdentifierReplaced(builder, typeText, specName, assignedName);
+        }
 
-            // 检查是否存在同名但不同包路径的类型
-            boolean hasConflict = hasNameConflict(desiredName, spec);
-            
-            if (!hasConflict && !queuedNames.contains(desiredName)) {
-                // 没有冲突且名称未被占用，直接使用原始名称
-                queuedNames.add(desiredName);
-                specNameCache.put(cacheKey, desiredName);
-                return new NameReservation(desiredName, true);
-            } else {
-                // 存在冲突或名称已被占用，生成候选名称
-                List<String> candidates = buildNameCandidates(desiredName, spec);
-                for (String candidate : candidates) {
-                    if (!queuedNames.contains(candidate)) {
-                        queuedNames.add(candidate);
-                        specNameCache.put(cacheKey, candidate);
-                        return new NameReservation(candidate, true);
+        /**
+         * Appends {@code text} with every whole identifier {@code name}, and any package qualifier in front of it,
+         * replaced by {@code replacement}.
+         */
+        private static void appendWithIdentifierReplaced(@NotNull StringBuilder builder,
+                                                         @NotNull String text,
+                                                         @NotNull String name,
+                                                         @NotNull String replacement) {
+            int copied = 0;
+            int index = text.indexOf(name);
+            while (index >= 0) {
+                int end = index + name.length();
+                boolean startsToken = index == 0 || !Character.isJavaIdentifierPart(text.charAt(index - 1)) || text.charAt(index - 1) == '.';
+                boolean endsToken = end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end));
+                if (startsToken && endsToken) {
+                    int start = index;
+                    if (start > 0 && text.charAt(start - 1) == '.') {
+                        start--;
+                        while (start > 0 && Character.isJavaIdentifierPart(text.charAt(start - 1))) {
+                            start--;
+                        }
                     }
+                    builder.append(text, copied, start).append(replacement);
+                    copied = end;
                 }
-                
-                // 如果所有候选名称都被占用，使用数字后缀
-                int suffix = 2;
-                String fallback;
-                do {
-                    fallback = desiredName + suffix++;
-                } while (queuedNames.contains(fallback));
-                
-                queuedNames.add(fallback);
-                specNameCache.put(cacheKey, fallback);
-                return new NameReservation(fallback, true);
-            }
-        }
-
-        private boolean hasNameConflict(@NotNull String desiredName, @Nullable GoTypeSpec spec) {
-            if (spec == null) {
-                return false;
+                index = text.indexOf(name, end);
             }
-            
-            String currentPackagePath = getPackagePath(spec);
-            
-            // 检查已缓存的名称中是否有同名但不同包路径的类型
-            for (Map.Entry<String, String> entry : specNameCache.entrySet()) {
-                String[] keyParts = entry.getKey().split(":");
-                if (keyParts.length >= 3 && keyParts[1].equals(desiredName)) {
-                    String existingPackagePath = keyParts[0];
-                    if (!existingPackagePath.equals(currentPackagePath)) {
-                        return true; // 发现同名但不同包路径的类型
-                    }
-                }
+            builder.append(text, copied, text.length());
+        }
+
+        /**
+         * The name of the concrete struct for a generic struct reference such as {@code Page[User]}, enqueueing it with
+         * the type arguments bound to the type parameters on first use. Instantiations are memoized by the spec and the
+         * resolved argument types, so every {@code Page[User]} shares one definition. Returns {@code null} for
+         * non-generic references and for generic types that are not structs, which keep their written form.
+         */
+        @Nullable
+        private String instantiate(@NotNull GoTypeSpec spec, @NotNull GoType type) {
+            List<GoType> arguments = typeArguments(type);
+            GoTypeParameters parameters = arguments.isEmpty() ? null : spec.getTypeParameters();
+            if (parameters == null) {
+                return null;
             }
-            
-            return false;
+            List<String> parameterNames = typeParameterNames(parameters);
+            if (parameterNames.size() != arguments.size()) {
+                return null;
+            }
+            List<String> argumentKeys = new ArrayList<>(arguments.size());
+            for (GoType argument : arguments) {
+                argumentKeys.add(canonicalType(argument, currentTypeArguments));
+            }
+            Instantiation key = new Instantiation(spec, argumentKeys);
+            String existing = instantiations.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (isRebuilding) {
+                missingNames = true;
+                return null;
+            }
+            GoStructType structType = resolveStructType(spec, new HashSet<>());
+            if (structType == null) {
+                return null;
+            }
+
+            Map<String, TypeArgument> typeArguments = new HashMap<>();
+            StringBuilder desiredName = new StringBuilder(spec.getName());
+            for (int i = 0; i < arguments.size(); i++) {
+                typeArguments.put(parameterNames.get(i), new TypeArgument(arguments.get(i), currentTypeArguments));
+                appendNameSuffix(desiredName, argumentKeys.get(i));
+            }
+            String name = GoTypeNamer.placeholder(namer.add(desiredName.toString(), null));
+            instantiations.put(key, name);
+            queue.addLast(new StructTarget(name, structType, null, currentDepth + 1, typeArguments));
+            return name;
         }
 
+        /**
+         * A naming independent description of {@code type}, with type parameters replaced by their arguments and named
+         * types by their package path and name, so that it does not depend on the names assigned later.
+         */
         @NotNull
-        private List<String> buildNameCandidates(@NotNull String desiredName, @Nullable GoTypeSpec spec) {
-            List<String> result = new ArrayList<>();
-            
-            if (spec == null) {
-                // 对于匿名结构体，总是添加原始名称
-                if (!StringUtil.isEmpty(desiredName)) {
-                    result.add(desiredName);
-                }
-
-                return result;
+        private String canonicalType(@Nullable GoType type, @NotNull Map<String, TypeArgument> typeArguments) {
+            if (type == null) {
+                return "";
             }
-            
-            // 总是添加原始名称作为第一候选
-            if (!StringUtil.isEmpty(desiredName)) {
-                result.add(desiredName);
-            }
-            PsiFile file = spec.getContainingFile();
-            if (file instanceof GoFile goFile) {
-                // 优先使用包名作为前缀
-                String packageName = goFile.getPackageName();
-                if (!StringUtil.isEmpty(packageName) && !packageName.equals("main")) {
-                    String candidate = StringUtil.capitalize(packageName) + desiredName;
-                    if (!StringUtil.isEmpty(candidate) && !candidate.equals(desiredName)) {
-                        result.add(candidate);
-                    }
-                }
-                
-                // 如果包名不可用或为main，使用导入路径的最后一段
-                String importPath = goFile.getImportPath(true);
-                if (!StringUtil.isEmpty(importPath)) {
-                    String lastSegment = extractLastSegment(importPath);
-                    if (!StringUtil.isEmpty(lastSegment) && !lastSegment.equals(packageName)) {
-                        String candidate = StringUtil.capitalize(lastSegment) + desiredName;
-                        if (!StringUtil.isEmpty(candidate) && !candidate.equals(desiredName)) {
-                            result.add(candidate);
-                        }
-                    }
-                }
-                
-                // 如果导入路径有多层，尝试使用倒数第二段
-                if (!StringUtil.isEmpty(importPath) && importPath.contains("/")) {
-                    String[] segments = importPath.split("/");
-                    if (segments.length >= 2) {
-                        String secondLastSegment = segments[segments.length - 2];
-                        if (!StringUtil.isEmpty(secondLastSegment) && 
-                            !secondLastSegment.equals(packageName) && 
-                            !secondLastSegment.equals(extractLastSegment(importPath))) {
-                            String candidate = StringUtil.capitalize(secondLastSegment) + desiredName;
-                            if (!StringUtil.isEmpty(candidate) && !candidate.equals(desiredName)) {
-                                result.add(candidate);
-                            }
-                        }
-                    }
+            if (type instanceof GoPointerType pointerType) {
+                return "*" + canonicalType(pointerType.getType(), typeArguments);
+            }
+            if (type instanceof GoArrayOrSliceType arrayType) {
+                String length = arrayType.getTripleDot() != null ? "..."
+                        : Optional.ofNullable(arrayType.getExpression()).map(PsiElement::getText).orElse("");
+                return "[" + length + "]" + canonicalType(arrayType.getType(), typeArguments);
+            }
+            if (type instanceof GoMapType mapType) {
+                return "map[" + canonicalType(mapType.getKeyType(), typeArguments) + "]"
+                        + canonicalType(mapType.getValueType(), typeArguments);
+            }
+            GoTypeReferenceExpression reference = type.getTypeReferenceExpression();
+            if (reference == null) {
+                return StringUtil.notNullize(type.getText());
+            }
+            TypeArgument argument = typeArgument(reference, typeArguments);
+            if (argument != null) {
+                return canonicalType(argument.type(), argument.scope());
+            }
+            if (!(resolve(reference) instanceof GoTypeSpec spec)) {
+                return StringUtil.notNullize(type.getText());
+            }
+            StringBuilder result = new StringBuilder(PsiTypeSource.INSTANCE.importPath(spec)).append(':').append(spec.getName());
+            List<GoType> arguments = typeArguments(type);
+            if (!arguments.isEmpty()) {
+                result.append('[');
+                for (int i = 0; i < arguments.size(); i++) {
+                    result.append(i > 0 ? "," : "").append(canonicalType(arguments.get(i), typeArguments));
                 }
-                
+                result.append(']');
+            }
+            return result.toString();
+        }
 
+        /**
+         * Appends the identifiers of a canonical argument type, capitalized and without package paths, so that
+         * {@code Page[map[string]model.User]} is named {@code PageMapStringUser}.
+         */
+        private static void appendNameSuffix(@NotNull StringBuilder name, @NotNull String canonicalType) {
+            for (String part : canonicalType.replaceAll("[^\\s\\[\\],*:]*:", "").split("[^A-Za-z0-9_]+")) {
+                name.append(StringUtil.capitalize(part));
             }
-            return result;
         }
 
         @Nullable
-        private String extractLastSegment(@NotNull String importPath) {
-            int index = importPath.lastIndexOf('/');
-            if (index >= 0 && index < importPath.length() - 1) {
-                return importPath.substring(index + 1);
+        private static TypeArgument typeArgument(@NotNull GoTypeReferenceExpression reference,
+                                                 @NotNull Map<String, TypeArgument> typeArguments) {
+            if (typeArguments.isEmpty() || reference.getQualifier() != null) {
+                return null;
             }
-            return importPath;
+            PsiElement identifier = reference.getIdentifier();
+            return identifier != null ? typeArguments.get(identifier.getText()) : null;
         }
 
-        private record NameReservation(@Nullable String name, boolean newlyReserved) {
+        /**
+         * Whether a qualified reference such as {@code common.Meta} points into a package that is not expanded, judged
+         * from the imports of the referencing file without resolving the reference itself.
+         */
+        private boolean isExcludedByQualifier(@NotNull GoTypeReferenceExpression reference) {
+            GoTypeReferenceExpression qualifier = reference.getQualifier();
+            if (qualifier == null) {
+                return false;
+            }
+            PsiFile file = reference.getContainingFile();
+            if (!(file instanceof GoFile goFile)) {
+                return false;
+            }
+            String importPath = fileScopes.computeIfAbsent(goFile, GoStructCopyProcessor.this::fileScope).imports().get(qualifier.getText());
+            return importPath != null && !shouldExpandPackage(importPath);
         }
-    }
 
-    private record StructTarget(String typeName, GoStructType structType, @Nullable GoTypeSpec spec) {
     }
 
-    private record StructDefinition(String name, List<FieldDefinition> fields, boolean isTypeAlias, @Nullable String underlyingType) {
-        // Constructor for struct definitions
-        public StructDefinition(String name, List<FieldDefinition> fields) {
-            this(name, fields, false, null);
+    /**
+     * @param typeArguments for instantiations of generic structs, the arguments bound to the type parameters
+     */
+    private record StructTarget(String typeName, GoStructType structType, @Nullable GoTypeSpec spec, int depth,
+                                Map<String, TypeArgument> typeArguments) {
+        StructTarget(String typeName, GoStructType structType, @Nullable GoTypeSpec spec, int depth) {
+            this(typeName, structType, spec, depth, Map.of());
         }
-        
+    }
+
+    /**
+     * A type argument together with the type arguments in scope where it was written, which it may refer to in turn.
+     */
+    private record TypeArgument(GoType type, Map<String, TypeArgument> scope) {
+    }
+
+    private record Instantiation(GoTypeSpec spec, List<String> arguments) {
+    }
+
+    record StructDefinition(String name, List<FieldDefinition> fields, boolean isTypeAlias, @Nullable String underlyingType,
+                                    @Nullable PsiElement source, Set<GoTypeSpec> references, int depth) {
         // Constructor for type alias definitions
-        public static StructDefinition typeAlias(String name, String underlyingType) {
-            return new StructDefinition(name, List.of(), true, underlyingType);
+        public static StructDefinition typeAlias(String name, String underlyingType, @NotNull GoTypeSpec source,
+                                                 Set<GoTypeSpec> references, int depth) {
+            return new StructDefinition(name, List.of(), true, underlyingType, source, references, depth);
+        }
+
+        /**
+         * This definition without its PSI, to outlive the read action it was built in.
+         */
+        StructDefinition detached() {
+            return new StructDefinition(name, fields, isTypeAlias, underlyingType, null, Set.of(), depth);
+        }
+
+        /**
+         * This definition with {@code names} applied to its name and to every type it contains.
+         */
+        StructDefinition withNames(@NotNull UnaryOperator<String> names) {
+            List<FieldDefinition> renamedFields = new ArrayList<>(fields.size());
+            for (FieldDefinition field : fields) {
+                renamedFields.add(new FieldDefinition(field.name(), names.apply(field.type()), field.tag()));
+            }
+            return new StructDefinition(names.apply(name), renamedFields, isTypeAlias,
+                    underlyingType != null ? names.apply(underlyingType) : null, source, references, depth);
         }
     }
 
-    private record FieldDefinition(@Nullable String name, @NotNull String type, @Nullable String tag) {
+    record FieldDefinition(@Nullable String name, @NotNull String type, @Nullable String tag) {
         static FieldDefinition named(@NotNull String name, @NotNull String type, @Nullable String tag) {
             return new FieldDefinition(name, type, tag);
         }
@@ -816,6 +1737,37 @@ public final class GoStructCopyProcessor {
         boolean isEmbedded() {
             return name == null;
         }
+
+        /**
+         * The number of cells gofmt splits the field line into: name, type and tag, without the name for embedded
+         * fields and without the tag when there is none.
+         */
+        int cellCount() {
+            return (isEmbedded() ? 1 : 2) + (tag != null ? 1 : 0);
+        }
+
+        @NotNull
+        String cell(int column) {
+            int index = isEmbedded() ? column + 1 : column;
+            return Objects.requireNonNull(index == 0 ? name : index == 1 ? type : tag);
+        }
+    }
+
+    /**
+     * A direct field of a struct as reported by {@link #describeFields(PsiElement)}.
+     *
+     * @param key             identifies the field within its struct for {@link GoStructSelection}
+     * @param name            the field name, {@code null} for embedded fields
+     * @param nestedSpecs     the structs the field type leads to, looking through pointers, slices, maps and non-struct
+     *                        type definitions
+     * @param anonymousStruct the anonymous struct declared inline by the field type, if any
+     */
+    public record GoStructField(@NotNull String key,
+                                @Nullable String name,
+                                @NotNull String typeText,
+                                @Nullable String tag,
+                                @NotNull List<GoTypeSpec> nestedSpecs,
+                                @Nullable GoStructType anonymousStruct) {
     }
 
     public record GoStructCopyResult(boolean success, @Nullable String content, @NotNull String message) {
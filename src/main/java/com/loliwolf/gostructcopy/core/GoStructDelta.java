@@ -0,0 +1,20 @@
+package com.loliwolf.gostructcopy.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The definitions of an expansion that changed since a snapshot, from {@link GoStructCopyProcessor#expandChanged}.
+ *
+ * @param content      the listing of the changed and added definitions, empty when nothing changed
+ * @param hashes       the content hash of every definition of the expansion, by name, to store as the next snapshot
+ * @param changedCount the number of definitions in {@code content}
+ * @param removed      the names of definitions in the snapshot that are no longer part of the expansion
+ */
+public record GoStructDelta(@NotNull String content,
+                            @NotNull Map<String, Long> hashes,
+                            int changedCount,
+                            @NotNull List<String> removed) {
+}
@@ -0,0 +1,20 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.StructDefinition;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Renders the definitions collected by one expansion, already named and in listing order, in one output language.
+ * Emitters only see the definitions, never PSI, so any number of them can run on the result of a single traversal.
+ */
+interface GoStructEmitter {
+
+    /**
+     * @param root the definition of the expanded type itself, which need not come first: structs are listed before
+     *             named non-struct types
+     */
+    @NotNull
+    String emit(@NotNull List<StructDefinition> definitions, @NotNull StructDefinition root);
+}
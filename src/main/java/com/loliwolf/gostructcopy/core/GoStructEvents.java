@@ -0,0 +1,97 @@
+package com.loliwolf.gostructcopy.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Java Flight Recorder events for the phases of an expansion, so that recordings of the IDE tie freezes to the
+ * expansions causing them. All of them are duration events, with start and end time taken by {@code begin()} and
+ * {@code commit()}. While no recording enables them, both are no-ops and the event objects are scalar-replaced by the
+ * JIT, so fields that are costly to compute are only filled in when {@code shouldCommit()} holds.
+ */
+public final class GoStructEvents {
+    private static final String CATEGORY = "Go Struct Copy";
+
+    private GoStructEvents() {
+    }
+
+    /**
+     * Number of UTF-8 bytes of {@code content}, for the output size fields.
+     */
+    public static long utf8Length(String content) {
+        return content != null ? content.getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+
+    @Name("com.loliwolf.gostructcopy.Expansion")
+    @Label("Go Struct Expansion")
+    @Description("A complete expansion, from the root spec to the rendered text")
+    @Category(CATEGORY)
+    public static final class Expansion extends Event {
+        @Label("Root Type")
+        public String rootType;
+
+        @Label("Type Count")
+        public int typeCount;
+
+        @Label("Output Size")
+        @DataAmount
+        public long outputBytes;
+    }
+
+    @Name("com.loliwolf.gostructcopy.StructBuild")
+    @Label("Go Struct Build")
+    @Description("Building the fields of one definition")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class StructBuild extends Event {
+        @Label("Type Name")
+        public String typeName;
+
+        @Label("Field Count")
+        public int fieldCount;
+    }
+
+    @Name("com.loliwolf.gostructcopy.ConflictResolution")
+    @Label("Go Struct Name Conflict Resolution")
+    @Description("Renaming definitions that share a name across packages")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class ConflictResolution extends Event {
+        @Label("Type Count")
+        public int typeCount;
+
+        @Label("Conflicting Names")
+        public int conflicts;
+    }
+
+    @Name("com.loliwolf.gostructcopy.Render")
+    @Label("Go Struct Render")
+    @Description("Rendering the definitions of an expansion to text")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Render extends Event {
+        @Label("Type Count")
+        public int typeCount;
+
+        @Label("Output Size")
+        @DataAmount
+        public long outputBytes;
+    }
+
+    @Name("com.loliwolf.gostructcopy.ClipboardWrite")
+    @Label("Go Struct Clipboard Write")
+    @Description("Handing the expansion over to the system clipboard")
+    @Category(CATEGORY)
+    public static final class ClipboardWrite extends Event {
+        @Label("Output Size")
+        @DataAmount
+        public long outputBytes;
+    }
+}
@@ -0,0 +1,192 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoImportList;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Result of {@link GoStructCopyProcessor#expandTracked(GoTypeSpec)}: the rendered definitions of an expansion together
+ * with the spec each one was built from and the definitions it references, so that an edit can be re-rendered without
+ * walking the whole closure again.
+ */
+public final class GoStructExpansion {
+    private final SmartPsiElementPointer<GoTypeSpec> root;
+    private final String rootName;
+    private final List<Entry> entries;
+    private final Set<Integer> changedEntries;
+    private final boolean rebuilt;
+
+    GoStructExpansion(@NotNull SmartPsiElementPointer<GoTypeSpec> root,
+                      @NotNull String rootName,
+                      @NotNull List<Entry> entries,
+                      @NotNull Set<Integer> changedEntries,
+                      boolean rebuilt) {
+        this.root = root;
+        this.rootName = rootName;
+        this.entries = List.copyOf(entries);
+        this.changedEntries = changedEntries;
+        this.rebuilt = rebuilt;
+    }
+
+    @NotNull
+    public SmartPsiElementPointer<GoTypeSpec> getRoot() {
+        return root;
+    }
+
+    @NotNull
+    public String getRootName() {
+        return rootName;
+    }
+
+    @NotNull
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Indices of the entries whose text differs from the expansion this one was refreshed from.
+     */
+    @NotNull
+    public Set<Integer> getChangedEntries() {
+        return changedEntries;
+    }
+
+    /**
+     * Whether this expansion was computed from scratch rather than patched from a previous one.
+     */
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    @NotNull
+    public String getText() {
+        StringBuilder builder = new StringBuilder();
+        for (Entry entry : entries) {
+            builder.append(entry.text());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Offset of the entry at {@code index} within {@link #getText()}.
+     */
+    public int getOffset(int index) {
+        int offset = 0;
+        for (int i = 0; i < index; i++) {
+            offset += entries.get(i).text().length();
+        }
+        return offset;
+    }
+
+    /**
+     * Finds the entries whose source may have been modified by a change to any of {@code changedElements}: the element
+     * lies inside the entry's spec, contains it, or belongs to the import list of the spec's file. An element that is
+     * no longer valid affects every entry.
+     */
+    @NotNull
+    public Set<Integer> findAffectedEntries(@NotNull Collection<? extends PsiElement> changedElements) {
+        Set<Integer> affected = new TreeSet<>();
+        for (int i = 0; i < entries.size(); i++) {
+            SmartPsiElementPointer<GoTypeSpec> pointer = entries.get(i).spec();
+            GoTypeSpec spec = pointer != null ? pointer.getElement() : null;
+            if (spec == null) {
+                affected.add(i);
+                continue;
+            }
+            for (PsiElement changed : changedElements) {
+                if (isAffectedBy(spec, changed)) {
+                    affected.add(i);
+                    break;
+                }
+            }
+        }
+        return affected;
+    }
+
+    private static boolean isAffectedBy(@NotNull GoTypeSpec spec, @NotNull PsiElement changed) {
+        if (!changed.isValid()) {
+            return true;
+        }
+        if (PsiTreeUtil.isAncestor(spec, changed, false) || PsiTreeUtil.isAncestor(changed, spec, false)) {
+            return true;
+        }
+        return PsiTreeUtil.getParentOfType(changed, GoImportList.class, false) != null
+                && changed.getContainingFile() == spec.getContainingFile();
+    }
+
+    /**
+     * Returns {@code changed} plus every entry that directly references one of them.
+     */
+    @NotNull
+    Set<Integer> withDependents(@NotNull Set<Integer> changed) {
+        Set<Integer> result = new TreeSet<>(changed);
+        for (int i = 0; i < entries.size(); i++) {
+            for (int dependency : entries.get(i).dependencies()) {
+                if (changed.contains(dependency)) {
+                    result.add(i);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether every entry is still reachable from the root, i.e. no edit dropped the last reference to a definition.
+     * Anonymous structs are not tracked as references and are treated as reachable.
+     */
+    boolean isConnected() {
+        boolean[] reached = new boolean[entries.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (i == 0 || entries.get(i).anonymous()) {
+                reached[i] = true;
+                queue.add(i);
+            }
+        }
+        while (!queue.isEmpty()) {
+            for (int dependency : entries.get(queue.poll()).dependencies()) {
+                if (!reached[dependency]) {
+                    reached[dependency] = true;
+                    queue.add(dependency);
+                }
+            }
+        }
+        for (boolean value : reached) {
+            if (!value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A single rendered definition.
+     *
+     * @param name         the name the definition was rendered with
+     * @param specName     the declared name of the source spec, {@code null} for anonymous structs
+     * @param text         the rendered definition including its trailing separator
+     * @param spec         the spec the definition was built from, or the spec enclosing an anonymous struct
+     * @param depth        how many references away from the root the definition was reached
+     * @param dependencies indices of the entries this definition references
+     */
+    public record Entry(@NotNull String name,
+                        @Nullable String specName,
+                        @NotNull String text,
+                        @Nullable SmartPsiElementPointer<GoTypeSpec> spec,
+                        boolean anonymous,
+                        boolean typeAlias,
+                        int depth,
+                        @NotNull Set<Integer> dependencies) {
+    }
+}
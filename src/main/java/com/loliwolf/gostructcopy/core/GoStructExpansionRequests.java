@@ -0,0 +1,145 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.concurrency.CancellablePromise;
+
+import java.util.function.Consumer;
+
+/**
+ * Runs the expansions requested by the copy action in the background, one at a time per project. A request for the
+ * root, options and PSI state of the expansion already running joins it instead of starting over, as when the shortcut
+ * is pressed twice; any other request cancels the running expansion, whose result nobody waits for anymore. A request
+ * still being prepared by its caller, for instance while the closure is estimated or the user confirms it, counts as
+ * running too, see {@link #prepare}. The files an expansion will visit are parsed ahead of it by
+ * {@link GoFilePrefetcher}.
+ */
+@Service(Service.Level.PROJECT)
+public final class GoStructExpansionRequests {
+    private final Project project;
+    private @Nullable InFlight running;
+    private @Nullable Pending preparing;
+
+    public GoStructExpansionRequests(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static GoStructExpansionRequests getInstance(@NotNull Project project) {
+        return project.getService(GoStructExpansionRequests.class);
+    }
+
+    /**
+     * Marks a request for {@code spec} and {@code options} as being prepared, before the caller does any work of its
+     * own for it. The caller then either calls {@link #expand} or gives up with {@link #abandon}.
+     *
+     * @return {@code false} if the same request for the current PSI state is already being prepared or running, so
+     * that this one would only join it
+     */
+    public synchronized boolean prepare(@NotNull GoTypeSpec spec, @NotNull GoStructCopyOptions options) {
+        long stamp = currentStamp();
+        InFlight current = running;
+        if (current != null && !current.result().isDone()
+                && current.spec() == spec && current.requested().equals(options) && current.stamp() == stamp) {
+            return false;
+        }
+        Pending pending = new Pending(spec, options, stamp);
+        if (pending.equals(preparing)) {
+            return false;
+        }
+        preparing = pending;
+        return true;
+    }
+
+    /**
+     * Drops a request marked by {@link #prepare} that will not be expanded after all.
+     */
+    public synchronized void abandon(@NotNull GoTypeSpec spec, @NotNull GoStructCopyOptions options) {
+        if (preparing != null && preparing.spec() == spec && preparing.options().equals(options)) {
+            preparing = null;
+        }
+    }
+
+    /**
+     * Expands {@code spec} with {@link GoStructCopyProcessor#expandCached(GoTypeSpec, int)}, calling {@code onFinished}
+     * on the UI thread unless the request joined a running expansion, which reports to its own caller only.
+     */
+    @NotNull
+    public synchronized Request expand(@NotNull GoTypeSpec spec,
+                                       @NotNull GoStructCopyProcessor processor,
+                                       int expectedTypes,
+                                       @NotNull Consumer<GoStructCopyResult> onFinished) {
+        long stamp = currentStamp();
+        // The caller may have narrowed the prepared options, e.g. to a depth limit, and is still the same request
+        GoStructCopyOptions requested = processor.getOptions();
+        if (preparing != null && preparing.spec() == spec) {
+            requested = preparing.options();
+            preparing = null;
+        }
+        InFlight current = running;
+        if (current != null && !current.result().isDone()) {
+            if (current.spec() == spec && current.options().equals(processor.getOptions()) && current.stamp() == stamp) {
+                return new Request(current.result(), true);
+            }
+            current.result().cancel();
+        }
+
+        GoFilePrefetcher prefetcher = GoFilePrefetcher.getInstance(project);
+        if (GoStructResultCache.getInstance(project).get(spec, processor.getOptions()) == null) {
+            prefetcher.prefetch(spec, processor.getOptions());
+        }
+        CancellablePromise<GoStructCopyResult> result = ReadAction.nonBlocking(() -> spec.isValid()
+                        ? processor.expandCached(spec, expectedTypes)
+                        : GoStructCopyResult.failure(GoStructCopyProcessor.NOT_FOUND_ERROR))
+                .expireWith(project)
+                .finishOnUiThread(ModalityState.defaultModalityState(), onFinished)
+                .submit(AppExecutorUtil.getAppExecutorService());
+        InFlight started = new InFlight(spec, processor.getOptions(), requested, stamp, result);
+        running = started;
+        result.onProcessed(ignored -> {
+            if (release(started)) {
+                prefetcher.cancel();
+            }
+        });
+        return new Request(result, false);
+    }
+
+    private long currentStamp() {
+        return GoStructResultCache.getInstance(project).currentStamp();
+    }
+
+    /**
+     * @return whether {@code finished} was still the latest expansion, which no other request has replaced
+     */
+    private synchronized boolean release(@NotNull InFlight finished) {
+        if (running == finished) {
+            running = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param result the running expansion, to attach further callbacks to
+     * @param joined whether the request joined an expansion started earlier
+     */
+    public record Request(@NotNull CancellablePromise<GoStructCopyResult> result, boolean joined) {
+    }
+
+    private record InFlight(@NotNull GoTypeSpec spec,
+                            @NotNull GoStructCopyOptions options,
+                            @NotNull GoStructCopyOptions requested,
+                            long stamp,
+                            @NotNull CancellablePromise<GoStructCopyResult> result) {
+    }
+
+    private record Pending(@NotNull GoTypeSpec spec, @NotNull GoStructCopyOptions options, long stamp) {
+    }
+}
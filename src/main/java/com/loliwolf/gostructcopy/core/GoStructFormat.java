@@ -0,0 +1,30 @@
+package com.loliwolf.gostructcopy.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The languages an expansion can be rendered in, see {@link GoStructCopyProcessor#expandFormats}.
+ */
+public enum GoStructFormat {
+    GO("Go", (definitions, root) -> GoStructCopyProcessor.renderDefinitions(definitions)),
+    JSON_SCHEMA("JSON Schema", new JsonSchemaEmitter()),
+    TYPESCRIPT("TypeScript", new TypeScriptEmitter());
+
+    private final String displayName;
+    private final GoStructEmitter emitter;
+
+    GoStructFormat(@NotNull String displayName, @NotNull GoStructEmitter emitter) {
+        this.displayName = displayName;
+        this.emitter = emitter;
+    }
+
+    @NotNull
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @NotNull
+    GoStructEmitter emitter() {
+        return emitter;
+    }
+}
@@ -0,0 +1,186 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.GoLanguage;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The structs copied last in a project, most recent first, for copying them again without expanding. The entries
+ * themselves are small; the copied text is kept deflated behind a {@link SoftReference}, so the garbage collector drops
+ * it under memory pressure and the entry falls back to a fresh expansion. The history is bounded both in entries and in
+ * the total size of the deflated text.
+ * <p>
+ * Text is only reused while no Go file and no project root changed since it was copied. Entries keep the options they
+ * were copied with, so copying again gives the same listing.
+ */
+@Service(Service.Level.PROJECT)
+public final class GoStructHistory {
+    private static final int MAX_ENTRIES = 20;
+    private static final long MAX_COMPRESSED_BYTES = 4_000_000;
+
+    private final Project project;
+    private final LinkedList<Entry> entries = new LinkedList<>();
+    private long compressedBytes;
+
+    public GoStructHistory(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static GoStructHistory getInstance(@NotNull Project project) {
+        return project.getService(GoStructHistory.class);
+    }
+
+    /**
+     * Stamp of the state a copied text depends on: the Go PSI and the project roots. Both counters only grow, so their
+     * sum changes whenever either does.
+     */
+    private long currentStamp() {
+        return PsiModificationTracker.getInstance(project).forLanguage(GoLanguage.INSTANCE).getModificationCount()
+                + ProjectRootModificationTracker.getInstance(project).getModificationCount();
+    }
+
+    /**
+     * Puts {@code spec} at the top of the history with the text just copied for it. Must be called inside a read
+     * action.
+     */
+    public void record(@NotNull GoTypeSpec spec, @NotNull GoStructCopyOptions options, @NotNull String content) {
+        String name = String.valueOf(spec.getName());
+        String packagePath = PsiTypeSource.INSTANCE.importPath(spec);
+        SmartPsiElementPointer<GoTypeSpec> pointer = SmartPointerManager.createPointer(spec);
+        byte[] compressed = compress(content);
+        Entry entry = new Entry(name, packagePath, pointer, options, currentStamp(), content.length(),
+                compressed.length, new SoftReference<>(compressed));
+
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                Entry existing = iterator.next();
+                if (existing.spec().getElement() == spec) {
+                    compressedBytes -= existing.compressedLength();
+                    iterator.remove();
+                }
+            }
+            entries.addFirst(entry);
+            compressedBytes += entry.compressedLength();
+            while (entries.size() > 1 && (entries.size() > MAX_ENTRIES || compressedBytes > MAX_COMPRESSED_BYTES)) {
+                compressedBytes -= entries.removeLast().compressedLength();
+            }
+        }
+    }
+
+    /**
+     * The entries, most recently copied first.
+     */
+    @NotNull
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    public void remove(@NotNull Entry entry) {
+        synchronized (entries) {
+            if (entries.remove(entry)) {
+                compressedBytes -= entry.compressedLength();
+            }
+        }
+    }
+
+    /**
+     * The text copied for {@code entry}, or {@code null} when it has to be expanded again: Go code or project roots
+     * changed since, or the text was collected.
+     */
+    @Nullable
+    public String getContent(@NotNull Entry entry) {
+        if (entry.stamp() != currentStamp()) {
+            return null;
+        }
+        byte[] compressed = entry.content().get();
+        return compressed != null ? decompress(compressed, entry.length()) : null;
+    }
+
+    @NotNull
+    private static byte[] compress(@NotNull String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            // Struct listings are repetitive and usually shrink to a fifth or less
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Nullable
+    private static String decompress(@NotNull byte[] compressed, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            // UTF-8 takes at least a byte per char
+            ByteArrayOutputStream output = new ByteArrayOutputStream(length);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                output.write(buffer, 0, inflated);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * A copied struct.
+     *
+     * @param stamp            the {@link #currentStamp()} when it was copied
+     * @param length           the length of the copied text, in chars
+     * @param compressedLength the size of the deflated text, counted against the history bound even once collected
+     */
+    public record Entry(@NotNull String name,
+                        @NotNull String packagePath,
+                        @NotNull SmartPsiElementPointer<GoTypeSpec> spec,
+                        @NotNull GoStructCopyOptions options,
+                        long stamp,
+                        int length,
+                        int compressedLength,
+                        @NotNull SoftReference<byte[]> content) {
+
+        /**
+         * Whether the copied text is still held in memory; it may still be outdated.
+         */
+        public boolean isRetained() {
+            return content.get() != null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.StructDefinition;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The collected, named definitions of an expansion, from {@link GoStructCopyProcessor#collectListing}. They hold no
+ * PSI, so rendering them needs no read action and can go on while the IDE writes.
+ */
+public final class GoStructListing {
+    private final String typeName;
+    private final List<StructDefinition> definitions;
+
+    GoStructListing(@NotNull String typeName, @NotNull List<StructDefinition> definitions) {
+        this.typeName = typeName;
+        this.definitions = definitions;
+    }
+
+    @NotNull
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public int getDefinitionCount() {
+        return definitions.size();
+    }
+
+    /**
+     * Hands the rendered text to {@code sink} in chunks of {@code batchSize} definitions, in order; the chunks joined
+     * are the text {@link GoStructCopyProcessor#expand} copies.
+     */
+    public void renderInBatches(int batchSize, @NotNull Consumer<String> sink) {
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < definitions.size(); i++) {
+            ProgressManager.checkCanceled();
+            boolean last = i == definitions.size() - 1;
+            GoStructCopyProcessor.renderDefinition(batch, definitions.get(i), last);
+            if (last || (i + 1) % batchSize == 0) {
+                sink.accept(batch.toString());
+                batch.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently computed expansions of a project, used by {@link GoStructCopyProcessor#expandCached(GoTypeSpec)}.
+ * <p>
+ * Any PSI change drops the whole cache, since an edit anywhere in the closure can change a result, and so does any
+ * change of the project roots (SDK, modules, vendor directories), which changes what references resolve to. Entries are only
+ * valid for the {@link GoStructCopyOptions} instance they were computed with. The cache is bounded both in entries and
+ * in the total length of the cached text; the least recently used entries are evicted first.
+ */
+@Service(Service.Level.PROJECT)
+public final class GoStructResultCache {
+    private static final int MAX_ENTRIES = 64;
+    private static final long MAX_TEXT_LENGTH = 2_000_000;
+
+    private final Project project;
+    private final LinkedHashMap<GoTypeSpec, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long modificationCount = -1;
+    private long textLength;
+
+    public GoStructResultCache(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static GoStructResultCache getInstance(@NotNull Project project) {
+        return project.getService(GoStructResultCache.class);
+    }
+
+    /**
+     * The PSI and project root modification count to pass to {@link #put}, taken before the expansion started.
+     */
+    public long currentStamp() {
+        return PsiModificationTracker.getInstance(project).getModificationCount()
+                + ProjectRootModificationTracker.getInstance(project).getModificationCount();
+    }
+
+    @Nullable
+    public synchronized GoStructCopyResult get(@NotNull GoTypeSpec spec, @NotNull GoStructCopyOptions options) {
+        validate(currentStamp());
+        CachedResult cached = results.get(spec);
+        return cached != null && cached.options() == options ? cached.result() : null;
+    }
+
+    public synchronized void put(@NotNull GoTypeSpec spec,
+                                 @NotNull GoStructCopyOptions options,
+                                 long stamp,
+                                 @NotNull GoStructCopyResult result) {
+        long current = currentStamp();
+        if (stamp != current) {
+            // Computed against PSI or roots that have changed since
+            return;
+        }
+        validate(current);
+        int length = result.content() != null ? result.content().length() : 0;
+        if (length > MAX_TEXT_LENGTH) {
+            return;
+        }
+        CachedResult previous = results.put(spec, new CachedResult(options, result, length));
+        if (previous != null) {
+            textLength -= previous.length();
+        }
+        textLength += length;
+        Iterator<Map.Entry<GoTypeSpec, CachedResult>> iterator = results.entrySet().iterator();
+        while ((results.size() > MAX_ENTRIES || textLength > MAX_TEXT_LENGTH) && iterator.hasNext()) {
+            textLength -= iterator.next().getValue().length();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Whether adding more entries would start evicting existing ones; speculative work stops at this point so it never
+     * displaces results the user actually asked for.
+     */
+    public synchronized boolean isFull() {
+        return results.size() >= MAX_ENTRIES || textLength >= MAX_TEXT_LENGTH;
+    }
+
+    private void validate(long stamp) {
+        if (stamp != modificationCount) {
+            results.clear();
+            textLength = 0;
+            modificationCount = stamp;
+        }
+    }
+
+    private record CachedResult(@NotNull GoStructCopyOptions options, @NotNull GoStructCopyResult result, int length) {
+    }
+}
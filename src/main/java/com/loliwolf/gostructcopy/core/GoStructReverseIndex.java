@@ -0,0 +1,200 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.GoFileType;
+import com.goide.GoLanguage;
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers which types of a project contain a given type in their expansion, without expanding them. The index holds the
+ * reverse of the edges {@link GoStructCopyProcessor} follows: for every type declared in the project's Go files, the
+ * types whose definitions reference it. A query is a breadth-first walk over these edges, bounded by the maximum depth
+ * of the options.
+ * <p>
+ * Building the index resolves every reference in the project once and is the only slow part; it is rebuilt on the next
+ * query after Go code or the project roots changed, or for other options. Types declared outside the project, such as
+ * in dependencies, are indexed as referenced types only.
+ */
+@Service(Service.Level.PROJECT)
+public final class GoStructReverseIndex {
+    private final Project project;
+    private volatile @Nullable Index index;
+
+    public GoStructReverseIndex(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static GoStructReverseIndex getInstance(@NotNull Project project) {
+        return project.getService(GoStructReverseIndex.class);
+    }
+
+    /**
+     * Stamp of the state the edges depend on, like {@link GoStructHistory}: the Go PSI and the project roots.
+     */
+    private long currentStamp() {
+        return PsiModificationTracker.getInstance(project).forLanguage(GoLanguage.INSTANCE).getModificationCount()
+                + ProjectRootModificationTracker.getInstance(project).getModificationCount();
+    }
+
+    /**
+     * Whether a query with {@code options} would be answered without building the index first.
+     */
+    public boolean isUpToDate(@NotNull GoStructCopyOptions options) {
+        Index current = index;
+        return current != null && current.options().equals(options) && current.stamp() == currentStamp();
+    }
+
+    /**
+     * The index for {@code options}, built first when missing or outdated. Every file is read in its own short read
+     * action, which waits for indexing to finish when it started meanwhile, so this must not be called inside one.
+     * Concurrent callers wait for a single build.
+     */
+    @NotNull
+    public synchronized Index getIndex(@NotNull GoStructCopyOptions options, @NotNull ProgressIndicator indicator) {
+        Index current = index;
+        if (current != null && current.options().equals(options) && current.stamp() == currentStamp()) {
+            return current;
+        }
+        DumbService dumbService = DumbService.getInstance(project);
+        long stamp = ReadAction.compute(this::currentStamp);
+        Collection<VirtualFile> files = dumbService.runReadActionInSmartMode(
+                () -> FileTypeIndex.getFiles(GoFileType.INSTANCE, GlobalSearchScope.projectScope(project)));
+        // Every file is read in smart mode, so references always resolve through the IDE, never syntactically
+        GoStructCopyProcessor processor = new GoStructCopyProcessor(options, GoResolveCache.getInstance(project),
+                GoStructStatistics.getInstance(project), null, null);
+        PsiManager psiManager = PsiManager.getInstance(project);
+        Map<TypeKey, List<TypeKey>> referencedBy = new HashMap<>(files.size() * 8);
+        int done = 0;
+        for (VirtualFile file : files) {
+            indicator.checkCanceled();
+            indicator.setFraction((double) done++ / files.size());
+            dumbService.runReadActionInSmartMode(() -> {
+                if (!file.isValid() || !(psiManager.findFile(file) instanceof GoFile goFile)) {
+                    return;
+                }
+                for (GoTypeSpec spec : goFile.getTypes()) {
+                    indicator.checkCanceled();
+                    TypeKey referrer = TypeKey.of(spec);
+                    if (referrer == null) {
+                        continue;
+                    }
+                    for (GoTypeSpec reference : processor.discoverReferences(spec)) {
+                        TypeKey key = TypeKey.of(reference);
+                        if (key == null) {
+                            continue;
+                        }
+                        List<TypeKey> referrers = referencedBy.computeIfAbsent(key, ignored -> new ArrayList<>(2));
+                        // A definition referencing a type in several fields is one edge
+                        if (referrers.isEmpty() || !referrers.get(referrers.size() - 1).equals(referrer)) {
+                            referrers.add(referrer);
+                        }
+                    }
+                }
+            });
+        }
+        // Built against the stamp taken before reading; a change meanwhile makes the next query rebuild it
+        Index built = new Index(options, stamp, referencedBy);
+        index = built;
+        return built;
+    }
+
+    /**
+     * Where a type is declared: its file and the start offset of its spec. Unlike the spec, a key keeps no syntax tree
+     * in memory and outlives the read action it was taken in; it points to the same spec as long as the PSI state the
+     * index was built against, which {@link Index#stamp()} identifies.
+     */
+    public record TypeKey(@NotNull VirtualFile file, int offset) {
+
+        @Nullable
+        public static TypeKey of(@NotNull GoTypeSpec spec) {
+            PsiFile file = spec.getContainingFile();
+            VirtualFile virtualFile = file != null ? file.getVirtualFile() : null;
+            return virtualFile != null ? new TypeKey(virtualFile, spec.getTextRange().getStartOffset()) : null;
+        }
+
+        /**
+         * The spec this key was taken from, or {@code null} when its file changed since. Must be called inside a read
+         * action.
+         */
+        @Nullable
+        public GoTypeSpec findSpec(@NotNull Project project) {
+            if (!file.isValid() || !(PsiManager.getInstance(project).findFile(file) instanceof GoFile goFile)) {
+                return null;
+            }
+            GoTypeSpec spec = PsiTreeUtil.getParentOfType(goFile.findElementAt(offset), GoTypeSpec.class, false);
+            return spec != null && spec.getTextRange().getStartOffset() == offset ? spec : null;
+        }
+    }
+
+    /**
+     * The reverse edges for one set of options.
+     *
+     * @param stamp the {@link #currentStamp()} before the edges were read
+     */
+    public record Index(@NotNull GoStructCopyOptions options,
+                        long stamp,
+                        @NotNull Map<TypeKey, List<TypeKey>> referencedBy) {
+
+        /**
+         * The types whose expansion contains {@code target}, roots first, each nearest first.
+         */
+        @NotNull
+        public List<Container> containersOf(@NotNull TypeKey target) {
+            Map<TypeKey, Integer> distances = new HashMap<>();
+            distances.put(target, 0);
+            ArrayDeque<TypeKey> queue = new ArrayDeque<>();
+            queue.add(target);
+            List<Container> result = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                TypeKey key = queue.poll();
+                int distance = distances.get(key) + 1;
+                // Expanding a referrer reaches the target only if references are expanded down to distance - 1
+                if (!options.expandsReferencesAt(distance - 1)) {
+                    continue;
+                }
+                for (TypeKey referrer : referencedBy.getOrDefault(key, List.of())) {
+                    if (distances.putIfAbsent(referrer, distance) == null) {
+                        result.add(new Container(referrer, distance, !referencedBy.containsKey(referrer)));
+                        queue.add(referrer);
+                    }
+                }
+            }
+            result.sort(Comparator.comparing((Container container) -> !container.root())
+                    .thenComparingInt(Container::distance));
+            return result;
+        }
+    }
+
+    /**
+     * A type whose expansion contains the queried one.
+     *
+     * @param distance how many references away the queried type is
+     * @param root     whether no other type of the project references this one, as for API payloads
+     */
+    public record Container(@NotNull TypeKey key, int distance, boolean root) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoTypeSpec;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The subset of a struct closure to copy with {@link GoStructCopyProcessor#expandSelection(GoTypeSpec, GoStructSelection)}.
+ * <p>
+ * Fields are selected per container, which is either a {@link GoTypeSpec} or an anonymous
+ * {@link com.goide.psi.GoStructType}. A named struct is only expanded when it has been selected as a container; any
+ * other reference to it is kept as written. Anonymous structs without an explicit selection keep all of their fields.
+ * Fields are identified by {@link GoStructCopyProcessor.GoStructField#key()}.
+ */
+public final class GoStructSelection {
+    private final Map<PsiElement, Set<String>> fields = new HashMap<>();
+
+    /**
+     * Marks {@code container} as expanded without selecting any of its fields yet.
+     */
+    public void include(@NotNull PsiElement container) {
+        fields.computeIfAbsent(container, k -> new LinkedHashSet<>());
+    }
+
+    public void select(@NotNull PsiElement container, @NotNull String fieldKey) {
+        fields.computeIfAbsent(container, k -> new LinkedHashSet<>()).add(fieldKey);
+    }
+
+    boolean includes(@NotNull PsiElement container) {
+        return fields.containsKey(container);
+    }
+
+    boolean includesField(@NotNull PsiElement container, @NotNull String fieldKey) {
+        Set<String> selected = fields.get(container);
+        return selected == null || selected.contains(fieldKey);
+    }
+}
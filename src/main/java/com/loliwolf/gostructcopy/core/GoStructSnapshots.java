@@ -0,0 +1,68 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The last snapshot taken of every root copied with "Copy Changed Go Structs": the content hash of each definition
+ * of its expansion, by name. Roots are keyed by import path and name rather than by PSI, so snapshots survive
+ * restarts; they are kept in the workspace file, since they describe what this checkout last synced.
+ */
+@Service(Service.Level.PROJECT)
+@State(name = "GoStructSnapshots", storages = @Storage(StoragePathMacros.WORKSPACE_FILE))
+public final class GoStructSnapshots implements PersistentStateComponent<GoStructSnapshots.SnapshotsState> {
+    private SnapshotsState state = new SnapshotsState();
+
+    @NotNull
+    public static GoStructSnapshots getInstance(@NotNull Project project) {
+        return project.getService(GoStructSnapshots.class);
+    }
+
+    @Override
+    public synchronized @NotNull SnapshotsState getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull SnapshotsState state) {
+        this.state = state;
+    }
+
+    /**
+     * The key of {@code root}: its import path and name. Must be called inside a read action.
+     */
+    @NotNull
+    public static String rootKey(@NotNull GoTypeSpec root) {
+        return PsiTypeSource.INSTANCE.importPath(root) + "." + PsiTypeSource.INSTANCE.name(root);
+    }
+
+    /**
+     * The hashes of the last snapshot of the root with {@code rootKey}, empty when none was taken.
+     */
+    @NotNull
+    public synchronized Map<String, Long> get(@NotNull String rootKey) {
+        Map<String, Long> hashes = state.roots.get(rootKey);
+        return hashes != null ? new HashMap<>(hashes) : Map.of();
+    }
+
+    public synchronized void put(@NotNull String rootKey, @NotNull Map<String, Long> hashes) {
+        state.roots.put(rootKey, new HashMap<>(hashes));
+    }
+
+    public synchronized void remove(@NotNull String rootKey) {
+        state.roots.remove(rootKey);
+    }
+
+    public static final class SnapshotsState {
+        public Map<String, Map<String, Long>> roots = new HashMap<>();
+    }
+}
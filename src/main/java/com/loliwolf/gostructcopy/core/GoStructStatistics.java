@@ -0,0 +1,114 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counters and recent phase timings of the expansions run in a project, shown by the Show Statistics action. Counters
+ * are {@link LongAdder}s since they are bumped on the resolve path, possibly from many discovery threads at once; the
+ * timing samples are only touched once per expansion.
+ */
+@Service(Service.Level.PROJECT)
+public final class GoStructStatistics {
+    private static final int MAX_SAMPLES = 100;
+
+    private final Project project;
+    private final LongAdder expansions = new LongAdder();
+    private final LongAdder typesExpanded = new LongAdder();
+    private final LongAdder resolveCalls = new LongAdder();
+    private final LongAdder filesLoaded = new LongAdder();
+    private final LongAdder conflictRounds = new LongAdder();
+    private final LongAdder resultCacheHits = new LongAdder();
+    private final LongAdder resultCacheMisses = new LongAdder();
+    private final Sample[] samples = new Sample[MAX_SAMPLES];
+    private int nextSample;
+    private int sampleCount;
+
+    public GoStructStatistics(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static GoStructStatistics getInstance(@NotNull Project project) {
+        return project.getService(GoStructStatistics.class);
+    }
+
+    void recordResolve() {
+        resolveCalls.increment();
+    }
+
+    void recordResultCache(boolean hit) {
+        (hit ? resultCacheHits : resultCacheMisses).increment();
+    }
+
+    void recordExpansion(@NotNull Sample sample, int filesLoaded, int conflictRounds) {
+        expansions.increment();
+        typesExpanded.add(sample.types());
+        this.filesLoaded.add(filesLoaded);
+        this.conflictRounds.add(conflictRounds);
+        synchronized (samples) {
+            samples[nextSample] = sample;
+            nextSample = (nextSample + 1) % MAX_SAMPLES;
+            sampleCount = Math.min(sampleCount + 1, MAX_SAMPLES);
+        }
+    }
+
+    @NotNull
+    public Snapshot snapshot() {
+        List<Sample> recent = new ArrayList<>(MAX_SAMPLES);
+        synchronized (samples) {
+            for (int i = 0; i < sampleCount; i++) {
+                recent.add(samples[(nextSample - sampleCount + i + MAX_SAMPLES) % MAX_SAMPLES]);
+            }
+        }
+        GoResolveCache resolveCache = GoResolveCache.getInstance(project);
+        return new Snapshot(expansions.sum(), typesExpanded.sum(), resolveCalls.sum(), filesLoaded.sum(),
+                conflictRounds.sum(), resolveCache.getHitCount(), resolveCache.getMissCount(), resultCacheHits.sum(),
+                resultCacheMisses.sum(), recent);
+    }
+
+    /**
+     * Phase timings of one expansion, in nanoseconds.
+     *
+     * @param collectNanos first pass over the closure: resolving references and building fields
+     * @param namingNanos  resolving name conflicts between definitions
+     * @param finishNanos  putting the final names in place of the placeholders
+     * @param renderNanos  rendering the definitions to text
+     * @param types        the number of definitions produced
+     */
+    public record Sample(long totalNanos, long collectNanos, long namingNanos, long finishNanos, long renderNanos, int types) {
+    }
+
+    /**
+     * @param recent the latest samples, oldest first
+     */
+    public record Snapshot(long expansions,
+                           long typesExpanded,
+                           long resolveCalls,
+                           long filesLoaded,
+                           long conflictRounds,
+                           long resolveCacheHits,
+                           long resolveCacheMisses,
+                           long resultCacheHits,
+                           long resultCacheMisses,
+                           @NotNull List<Sample> recent) {
+
+        /**
+         * The {@code percentile} (0 to 100) of a sample value over the recent samples, 0 when there are none.
+         */
+        public long percentile(@NotNull ToLongFunction<Sample> value, int percentile) {
+            if (recent.isEmpty()) {
+                return 0;
+            }
+            long[] values = recent.stream().mapToLong(value).sorted().toArray();
+            int index = (int) Math.ceil(percentile / 100.0 * values.length) - 1;
+            return values[Math.max(0, Math.min(values.length - 1, index))];
+        }
+    }
+}
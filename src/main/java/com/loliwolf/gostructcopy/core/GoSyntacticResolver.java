@@ -0,0 +1,102 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeReferenceExpression;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Resolves type references from the parsed files of a package alone, for expansions while the IDE is indexing and
+ * {@link GoTypeReferenceExpression#resolve()} is unavailable. Unqualified names are looked up among the types declared
+ * by the files of the referencing package; qualified ones among those of the imported package, located through
+ * {@link GoModuleLayout}. References into other modules, through dot imports or to local types stay unresolved and are
+ * kept as written; those that would have been expanded are recorded, so the user can be told the copy is incomplete.
+ * <p>
+ * Must be used inside a read action. The symbol tables are built lazily, one package at a time, and kept for the
+ * lifetime of the instance, which should not outlive the indexing it stands in for.
+ */
+final class GoSyntacticResolver {
+    private static final Set<String> PREDECLARED = Set.of("any", "bool", "byte", "comparable", "complex64", "complex128",
+            "error", "float32", "float64", "int", "int8", "int16", "int32", "int64", "rune", "string", "uint", "uint8",
+            "uint16", "uint32", "uint64", "uintptr");
+
+    private final PsiManager psiManager;
+    // Symbol tables by directory, package name (null for imported packages) and whether tests are included
+    private final Map<String, GoPackageSymbols> packages = new HashMap<>();
+    private final GoModuleLayout moduleLayout = new GoModuleLayout();
+    private final Set<String> unresolved = new TreeSet<>();
+
+    GoSyntacticResolver(@NotNull Project project) {
+        this.psiManager = PsiManager.getInstance(project);
+    }
+
+    /**
+     * @param scope the scope of the file containing {@code reference}
+     */
+    @Nullable
+    GoTypeSpec resolve(@NotNull GoTypeReferenceExpression reference, @NotNull GoResolveCache.FileScope scope) {
+        String name = reference.getIdentifier().getText();
+        if (StringUtil.isEmpty(name) || !(reference.getContainingFile() instanceof GoFile file)) {
+            return null;
+        }
+        VirtualFile virtualFile = file.getVirtualFile();
+        VirtualFile directory = virtualFile != null ? virtualFile.getParent() : null;
+        GoTypeReferenceExpression qualifier = reference.getQualifier();
+        if (qualifier == null) {
+            if (PREDECLARED.contains(name) || isTypeParameter(reference, name)) {
+                return null;
+            }
+            GoTypeSpec spec = directory != null
+                    ? packageSymbols(directory, file.getPackageName(), GoPackageSymbols.isTestFile(file.getName())).first(name)
+                    : null;
+            return record(spec, reference);
+        }
+        String importPath = scope.imports().get(qualifier.getText());
+        if (importPath == null || !importPath.contains(".")) {
+            // The standard library is never expanded, so failing to find it loses nothing
+            return null;
+        }
+        VirtualFile packageDirectory = directory != null ? moduleLayout.findPackage(directory, importPath) : null;
+        GoTypeSpec spec = packageDirectory != null ? packageSymbols(packageDirectory, null, false).first(name) : null;
+        return record(spec, reference);
+    }
+
+    /**
+     * The references that were left unresolved although they would have been expanded, as written.
+     */
+    @NotNull
+    Set<String> getUnresolved() {
+        return unresolved;
+    }
+
+    @Nullable
+    private GoTypeSpec record(@Nullable GoTypeSpec spec, @NotNull GoTypeReferenceExpression reference) {
+        if (spec == null) {
+            unresolved.add(reference.getText());
+        }
+        return spec;
+    }
+
+    private static boolean isTypeParameter(@NotNull GoTypeReferenceExpression reference, @NotNull String name) {
+        GoTypeSpec enclosing = PsiTreeUtil.getParentOfType(reference, GoTypeSpec.class);
+        return enclosing != null && enclosing.getTypeParameters() != null
+                && GoStructCopyProcessor.typeParameterNames(enclosing.getTypeParameters()).contains(name);
+    }
+
+    @NotNull
+    private GoPackageSymbols packageSymbols(@NotNull VirtualFile directory, @Nullable String packageName, boolean includeTests) {
+        String key = directory.getPath() + ":" + packageName + ":" + includeTests;
+        return packages.computeIfAbsent(key, ignored -> GoPackageSymbols.collect(psiManager, directory, packageName, includeTests));
+    }
+}
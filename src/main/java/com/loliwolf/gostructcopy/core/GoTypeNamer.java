@@ -0,0 +1,236 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Assigns the names of the definitions of an expansion in one pass over all of them. Definitions are added as they are
+ * discovered and referenced through {@link #placeholder placeholders}; once the closure is complete, {@link #assign()}
+ * names them all and {@link #withAssignedNames} puts the names in place. Works on a {@link TypeSource} only, so the
+ * naming can be run and measured without PSI.
+ * <p>
+ * Every type keeps its own name unless types of other packages claim it too: then the first one discovered keeps it and
+ * the others get their package name in front, or all of them do when one is a named non-struct type. Anonymous structs
+ * and generic instantiations only get what is left, with a numeric suffix when needed. Both steps sort the definitions
+ * instead of relying on hash order, so the result only depends on the names and the discovery order.
+ *
+ * @param <S> the type declarations
+ */
+public final class GoTypeNamer<S> {
+    private static final char PLACEHOLDER_START = '\u0001';
+    private static final char PLACEHOLDER_END = '\u0002';
+    // Claim order for a proposed name: types keeping their own name, then renamed types, then synthesized names
+    private static final int OWN_NAME = 0;
+    private static final int PACKAGE_NAME = 1;
+    private static final int SYNTHESIZED = 2;
+
+    private final TypeSource<S> source;
+    private final List<String> desiredNames;
+    private final List<S> specs;
+    // Indexed by slot, null until assign()
+    private String[] names;
+
+    /**
+     * @param expectedTypes the expected number of definitions, used to pre-size the tables; 0 when unknown
+     */
+    public GoTypeNamer(@NotNull TypeSource<S> source, int expectedTypes) {
+        this.source = source;
+        this.desiredNames = new ArrayList<>(Math.max(16, expectedTypes));
+        this.specs = new ArrayList<>(Math.max(16, expectedTypes));
+    }
+
+    /**
+     * Adds the definition of {@code spec}, wanting its own name.
+     */
+    public int add(@NotNull S spec) {
+        return add(source.name(spec), spec);
+    }
+
+    /**
+     * Adds a definition wanting {@code desiredName}; {@code spec} is null for anonymous structs and generic
+     * instantiations.
+     *
+     * @return the slot of the definition, for {@link #placeholder}
+     */
+    public int add(@NotNull String desiredName, @Nullable S spec) {
+        if (names != null) {
+            throw new IllegalStateException("Names were already assigned");
+        }
+        desiredNames.add(desiredName);
+        specs.add(spec);
+        return desiredNames.size() - 1;
+    }
+
+    /**
+     * The text standing for the name of {@code slot} until the names are assigned. Made of control characters, which
+     * never occur in Go type text.
+     */
+    @NotNull
+    public static String placeholder(int slot) {
+        return PLACEHOLDER_START + Integer.toString(slot) + PLACEHOLDER_END;
+    }
+
+    /**
+     * Whether {@code text} still stands for names that are not assigned yet.
+     */
+    public static boolean containsPlaceholder(@NotNull String text) {
+        return text.indexOf(PLACEHOLDER_START) >= 0;
+    }
+
+    /**
+     * Names every added definition.
+     *
+     * @return the number of names claimed by types of more than one package
+     */
+    public int assign() {
+        int count = desiredNames.size();
+        Integer[] order = new Integer[count];
+        Arrays.setAll(order, slot -> slot);
+        String[] proposed = new String[count];
+        int[] priorities = new int[count];
+
+        // Group by desired name, declared types before synthesized ones, each in discovery order
+        Arrays.sort(order, Comparator.<Integer, String>comparing(desiredNames::get)
+                .thenComparing(slot -> specs.get(slot) == null)
+                .thenComparing(slot -> slot));
+        int conflicts = 0;
+        for (int start = 0, end; start < count; start = end) {
+            end = start + 1;
+            while (end < count && desiredNames.get(order[end]).equals(desiredNames.get(order[start]))) {
+                end++;
+            }
+            if (propose(order, start, end, proposed, priorities)) {
+                conflicts++;
+            }
+        }
+
+        // The first claim on every proposed name wins; the others, and names already taken, get a numeric suffix
+        Arrays.sort(order, Comparator.<Integer, String>comparing(slot -> proposed[slot])
+                .thenComparingInt(slot -> priorities[slot])
+                .thenComparing(slot -> slot));
+        String[] assigned = new String[count];
+        Set<String> taken = new HashSet<>(Math.max(16, count * 4 / 3 + 1));
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || !proposed[order[i]].equals(proposed[order[i - 1]])) {
+                assigned[order[i]] = proposed[order[i]];
+                taken.add(proposed[order[i]]);
+            }
+        }
+        for (int slot : order) {
+            if (assigned[slot] == null) {
+                int suffix = 2;
+                String candidate;
+                do {
+                    candidate = proposed[slot] + suffix++;
+                } while (!taken.add(candidate));
+                assigned[slot] = candidate;
+            }
+        }
+        names = assigned;
+        return conflicts;
+    }
+
+    /**
+     * Proposes names for the definitions {@code order[start..end)}, which all want the same name.
+     *
+     * @return whether types of more than one package want it
+     */
+    private boolean propose(Integer[] order, int start, int end, String[] proposed, int[] priorities) {
+        String desiredName = desiredNames.get(order[start]);
+        Set<String> packagePaths = new HashSet<>();
+        boolean hasTypeAlias = false;
+        for (int i = start; i < end; i++) {
+            S spec = specs.get(order[i]);
+            if (spec != null) {
+                packagePaths.add(source.importPath(spec));
+                hasTypeAlias |= source.isTypeAlias(spec);
+            }
+        }
+        boolean conflict = packagePaths.size() > 1;
+        boolean keepFirst = !hasTypeAlias;
+        for (int i = start; i < end; i++) {
+            int slot = order[i];
+            S spec = specs.get(slot);
+            if (spec == null) {
+                proposed[slot] = desiredName;
+                priorities[slot] = SYNTHESIZED;
+            } else if (!conflict || keepFirst) {
+                proposed[slot] = desiredName;
+                priorities[slot] = OWN_NAME;
+                keepFirst = false;
+            } else {
+                proposed[slot] = packagePrefix(spec) + desiredName;
+                priorities[slot] = PACKAGE_NAME;
+            }
+        }
+        return conflict;
+    }
+
+    /**
+     * The capitalized package clause of {@code spec}, or the last segment of its import path for {@code main}
+     * packages; empty when neither is known.
+     */
+    @NotNull
+    private String packagePrefix(@NotNull S spec) {
+        String packageName = source.packageName(spec);
+        if (StringUtil.isEmpty(packageName) || packageName.equals("main")) {
+            String importPath = source.importPath(spec);
+            packageName = importPath.substring(importPath.lastIndexOf('/') + 1);
+        }
+        return StringUtil.capitalize(packageName);
+    }
+
+    /**
+     * The name assigned to {@code slot}.
+     */
+    @NotNull
+    public String name(int slot) {
+        if (names == null) {
+            throw new IllegalStateException("Names are not assigned yet");
+        }
+        return names[slot];
+    }
+
+    /**
+     * {@code text} with every placeholder replaced by the assigned name.
+     */
+    @NotNull
+    public String withAssignedNames(@NotNull String text) {
+        return substitute(text, this::name);
+    }
+
+    /**
+     * {@code text} with every placeholder replaced by the desired name, for deriving names from other names and for
+     * diagnostics before the names are assigned.
+     */
+    @NotNull
+    public String withDesiredNames(@NotNull String text) {
+        return substitute(text, desiredNames::get);
+    }
+
+    @NotNull
+    private static String substitute(@NotNull String text, @NotNull IntFunction<String> name) {
+        int start = text.indexOf(PLACEHOLDER_START);
+        if (start < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length() + 16);
+        int copied = 0;
+        while (start >= 0) {
+            int end = text.indexOf(PLACEHOLDER_END, start);
+            result.append(text, copied, start).append(name.apply(Integer.parseInt(text, start + 1, end, 10)));
+            copied = end + 1;
+            start = text.indexOf(PLACEHOLDER_START, copied);
+        }
+        return result.append(text, copied, text.length()).toString();
+    }
+}
@@ -0,0 +1,79 @@
+package com.loliwolf.gostructcopy.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link TypeSource} over plain {@link Spec} objects, for running the naming without an IDE.
+ */
+public final class InMemoryTypeSource implements TypeSource<InMemoryTypeSource.Spec> {
+    public static final InMemoryTypeSource INSTANCE = new InMemoryTypeSource();
+
+    private InMemoryTypeSource() {
+    }
+
+    @NotNull
+    @Override
+    public String name(@NotNull Spec spec) {
+        return spec.name;
+    }
+
+    @NotNull
+    @Override
+    public String importPath(@NotNull Spec spec) {
+        return spec.importPath;
+    }
+
+    @Nullable
+    @Override
+    public String packageName(@NotNull Spec spec) {
+        return spec.packageName;
+    }
+
+    @Override
+    public boolean isTypeAlias(@NotNull Spec spec) {
+        return !spec.struct;
+    }
+
+    /**
+     * A type declaration; like PSI elements, two specs are only equal when they are the same object.
+     */
+    public static final class Spec {
+        private final String name;
+        private final String importPath;
+        private final @Nullable String packageName;
+        private final boolean struct;
+
+        private Spec(@NotNull String name, @NotNull String importPath, @Nullable String packageName, boolean struct) {
+            this.name = name;
+            this.importPath = importPath;
+            this.packageName = packageName;
+            this.struct = struct;
+        }
+
+        /**
+         * A struct declared in the package at {@code importPath}, whose package clause is its last segment.
+         */
+        @NotNull
+        public static Spec struct(@NotNull String name, @NotNull String importPath) {
+            return new Spec(name, importPath, lastSegment(importPath), true);
+        }
+
+        /**
+         * A named non-struct type declared in the package at {@code importPath}.
+         */
+        @NotNull
+        public static Spec alias(@NotNull String name, @NotNull String importPath) {
+            return new Spec(name, importPath, lastSegment(importPath), false);
+        }
+
+        private static String lastSegment(String importPath) {
+            return importPath.substring(importPath.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public String toString() {
+            return importPath + "." + name;
+        }
+    }
+}
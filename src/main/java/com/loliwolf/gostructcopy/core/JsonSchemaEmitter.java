@@ -0,0 +1,120 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.loliwolf.gostructcopy.core.GoJsonTypes.JsonMember;
+import com.loliwolf.gostructcopy.core.GoJsonTypes.JsonType;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.StructDefinition;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders an expansion as a JSON Schema (draft 2020-12) of the JSON {@code encoding/json} produces for the root: every
+ * definition goes under {@code $defs} and the schema itself refers to the root. Keys come from the {@code json} tags,
+ * {@code omitempty} fields are not required, and embedded structs whose fields are promoted become {@code allOf}
+ * references.
+ */
+final class JsonSchemaEmitter implements GoStructEmitter {
+    private static final String DIALECT = "https://json-schema.org/draft/2020-12/schema";
+    private static final String INDENT = "  ";
+
+    @NotNull
+    @Override
+    public String emit(@NotNull List<StructDefinition> definitions, @NotNull StructDefinition root) {
+        Map<String, StructDefinition> byName = GoJsonTypes.byName(definitions);
+        StringBuilder builder = new StringBuilder(definitions.size() * 512);
+        builder.append("{\n");
+        builder.append(INDENT).append("\"$schema\": ").append(GoJsonTypes.quote(DIALECT)).append(",\n");
+        builder.append(INDENT).append("\"$ref\": ").append(GoJsonTypes.quote(reference(root.name()))).append(",\n");
+        builder.append(INDENT).append("\"$defs\": {\n");
+        for (int i = 0; i < definitions.size(); i++) {
+            StructDefinition definition = definitions.get(i);
+            String indent = INDENT + INDENT;
+            builder.append(indent).append(GoJsonTypes.quote(definition.name())).append(": ");
+            if (definition.isTypeAlias()) {
+                appendType(builder, GoJsonTypes.parse(String.valueOf(definition.underlyingType()), byName));
+            } else {
+                appendObject(builder, GoJsonTypes.members(definition, byName), indent);
+            }
+            builder.append(i == definitions.size() - 1 ? "\n" : ",\n");
+        }
+        builder.append(INDENT).append("}\n");
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private static void appendObject(@NotNull StringBuilder builder, @NotNull List<JsonMember> members, @NotNull String indent) {
+        String inner = indent + INDENT;
+        List<String> embedded = new ArrayList<>();
+        List<String> required = new ArrayList<>();
+        List<JsonMember> properties = new ArrayList<>(members.size());
+        for (JsonMember member : members) {
+            if (member.key() == null) {
+                embedded.add(member.type().name());
+            } else {
+                properties.add(member);
+                if (!member.optional()) {
+                    required.add(member.key());
+                }
+            }
+        }
+
+        builder.append("{\n").append(inner).append("\"type\": \"object\"");
+        if (!embedded.isEmpty()) {
+            builder.append(",\n").append(inner).append("\"allOf\": [");
+            for (int i = 0; i < embedded.size(); i++) {
+                builder.append(i == 0 ? "" : ", ").append("{\"$ref\": ").append(GoJsonTypes.quote(reference(embedded.get(i)))).append('}');
+            }
+            builder.append(']');
+        }
+        if (!properties.isEmpty()) {
+            builder.append(",\n").append(inner).append("\"properties\": {\n");
+            for (int i = 0; i < properties.size(); i++) {
+                JsonMember property = properties.get(i);
+                builder.append(inner).append(INDENT).append(GoJsonTypes.quote(property.key())).append(": ");
+                appendType(builder, property.type());
+                builder.append(i == properties.size() - 1 ? "\n" : ",\n");
+            }
+            builder.append(inner).append('}');
+        }
+        if (!required.isEmpty()) {
+            builder.append(",\n").append(inner).append("\"required\": [");
+            for (int i = 0; i < required.size(); i++) {
+                builder.append(i == 0 ? "" : ", ").append(GoJsonTypes.quote(required.get(i)));
+            }
+            builder.append(']');
+        }
+        builder.append('\n').append(indent).append('}');
+    }
+
+    /**
+     * Appends the schema of a member type on a single line.
+     */
+    private static void appendType(@NotNull StringBuilder builder, @NotNull JsonType type) {
+        switch (type.kind()) {
+            case BOOLEAN -> builder.append("{\"type\": \"boolean\"}");
+            case INTEGER -> builder.append("{\"type\": \"integer\"}");
+            case NUMBER -> builder.append("{\"type\": \"number\"}");
+            case STRING -> builder.append("{\"type\": \"string\"}");
+            case DATE_TIME -> builder.append("{\"type\": \"string\", \"format\": \"date-time\"}");
+            case ANY -> builder.append("{}");
+            case ARRAY -> {
+                builder.append("{\"type\": \"array\", \"items\": ");
+                appendType(builder, type.element());
+                builder.append('}');
+            }
+            case MAP -> {
+                builder.append("{\"type\": \"object\", \"additionalProperties\": ");
+                appendType(builder, type.element());
+                builder.append('}');
+            }
+            case REFERENCE -> builder.append("{\"$ref\": ").append(GoJsonTypes.quote(reference(type.name()))).append('}');
+        }
+    }
+
+    @NotNull
+    private static String reference(@NotNull String name) {
+        return "#/$defs/" + name;
+    }
+}
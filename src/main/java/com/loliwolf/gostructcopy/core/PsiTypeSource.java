@@ -0,0 +1,51 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoStructType;
+import com.goide.psi.GoType;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link TypeSource} over Go PSI; must be used inside a read action.
+ */
+final class PsiTypeSource implements TypeSource<GoTypeSpec> {
+    static final PsiTypeSource INSTANCE = new PsiTypeSource();
+
+    private PsiTypeSource() {
+    }
+
+    @NotNull
+    @Override
+    public String name(@NotNull GoTypeSpec spec) {
+        return StringUtil.notNullize(spec.getName());
+    }
+
+    @NotNull
+    @Override
+    public String importPath(@NotNull GoTypeSpec spec) {
+        PsiFile file = spec.getContainingFile();
+        if (file instanceof GoFile goFile) {
+            String importPath = goFile.getImportPath(true);
+            if (!StringUtil.isEmpty(importPath)) {
+                return importPath;
+            }
+        }
+        return "";
+    }
+
+    @Nullable
+    @Override
+    public String packageName(@NotNull GoTypeSpec spec) {
+        return spec.getContainingFile() instanceof GoFile goFile ? goFile.getPackageName() : null;
+    }
+
+    @Override
+    public boolean isTypeAlias(@NotNull GoTypeSpec spec) {
+        GoType specType = spec.getSpecType().getType();
+        return specType != null && !(specType instanceof GoStructType);
+    }
+}
@@ -0,0 +1,86 @@
+package com.loliwolf.gostructcopy.core;
+
+import com.loliwolf.gostructcopy.core.GoJsonTypes.JsonMember;
+import com.loliwolf.gostructcopy.core.GoJsonTypes.JsonType;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.StructDefinition;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Renders an expansion as TypeScript declarations of the JSON {@code encoding/json} produces: an interface per struct
+ * and a type alias per named non-struct type. Keys come from the {@code json} tags, {@code omitempty} fields are
+ * optional, and embedded structs whose fields are promoted are extended.
+ */
+final class TypeScriptEmitter implements GoStructEmitter {
+    private static final String INDENT = "  ";
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+    @NotNull
+    @Override
+    public String emit(@NotNull List<StructDefinition> definitions, @NotNull StructDefinition root) {
+        Map<String, StructDefinition> byName = GoJsonTypes.byName(definitions);
+        StringBuilder builder = new StringBuilder(definitions.size() * 256);
+        for (int i = 0; i < definitions.size(); i++) {
+            StructDefinition definition = definitions.get(i);
+            if (definition.isTypeAlias()) {
+                builder.append("export type ").append(definition.name()).append(" = ");
+                appendType(builder, GoJsonTypes.parse(String.valueOf(definition.underlyingType()), byName));
+                builder.append(";\n");
+            } else {
+                appendInterface(builder, definition.name(), GoJsonTypes.members(definition, byName));
+            }
+            if (i < definitions.size() - 1) {
+                builder.append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void appendInterface(@NotNull StringBuilder builder, @NotNull String name, @NotNull List<JsonMember> members) {
+        List<String> embedded = new ArrayList<>();
+        for (JsonMember member : members) {
+            if (member.key() == null) {
+                embedded.add(member.type().name());
+            }
+        }
+        builder.append("export interface ").append(name);
+        if (!embedded.isEmpty()) {
+            builder.append(" extends ").append(String.join(", ", embedded));
+        }
+        builder.append(" {\n");
+        for (JsonMember member : members) {
+            if (member.key() == null) {
+                continue;
+            }
+            String key = member.key();
+            builder.append(INDENT).append(IDENTIFIER.matcher(key).matches() ? key : GoJsonTypes.quote(key));
+            builder.append(member.optional() ? "?: " : ": ");
+            appendType(builder, member.type());
+            builder.append(";\n");
+        }
+        builder.append("}\n");
+    }
+
+    private static void appendType(@NotNull StringBuilder builder, @NotNull JsonType type) {
+        switch (type.kind()) {
+            case BOOLEAN -> builder.append("boolean");
+            case INTEGER, NUMBER -> builder.append("number");
+            case STRING, DATE_TIME -> builder.append("string");
+            case ANY -> builder.append("unknown");
+            case ARRAY -> {
+                appendType(builder, type.element());
+                builder.append("[]");
+            }
+            case MAP -> {
+                builder.append("Record<string, ");
+                appendType(builder, type.element());
+                builder.append('>');
+            }
+            case REFERENCE -> builder.append(type.name());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.loliwolf.gostructcopy.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The few facts about a named type that naming needs, so that {@link GoTypeNamer} runs on PSI specs inside the IDE and
+ * on plain objects in headless tests and benchmarks. Types are compared by identity.
+ *
+ * @param <S> the type declarations, {@link com.goide.psi.GoTypeSpec} in the IDE
+ */
+public interface TypeSource<S> {
+
+    @NotNull
+    String name(@NotNull S spec);
+
+    /**
+     * The import path of the package declaring {@code spec}, empty when unknown.
+     */
+    @NotNull
+    String importPath(@NotNull S spec);
+
+    /**
+     * The package clause of the file declaring {@code spec}, null when unknown.
+     */
+    @Nullable
+    String packageName(@NotNull S spec);
+
+    /**
+     * Whether {@code spec} declares a named non-struct type, like {@code type ID string}.
+     */
+    boolean isTypeAlias(@NotNull S spec);
+}
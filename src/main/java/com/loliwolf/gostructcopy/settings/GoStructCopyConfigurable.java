@@ -0,0 +1,110 @@
+package com.loliwolf.gostructcopy.settings;
+
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextArea;
+import com.intellij.util.ui.FormBuilder;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings page for {@link GoStructCopySettings}, under Tools.
+ */
+public final class GoStructCopyConfigurable implements Configurable {
+    private final Project project;
+    private JBTextArea includeArea;
+    private JBTextArea excludeArea;
+    private JSpinner depthSpinner;
+    private JBCheckBox speculativeCheckBox;
+
+    public GoStructCopyConfigurable(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public @Nls String getDisplayName() {
+        return "Go Struct Copy";
+    }
+
+    @Override
+    public @Nullable JComponent createComponent() {
+        includeArea = new JBTextArea(5, 40);
+        excludeArea = new JBTextArea(5, 40);
+        depthSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 100, 1));
+        speculativeCheckBox = new JBCheckBox("Pre-expand structs of the focused Go file in the background");
+        JBLabel hint = new JBLabel("One import path pattern per line; * matches any characters, e.g. */pkg/common/* or *pb. "
+                + "Standard library packages are never expanded.");
+        hint.setComponentStyle(UIUtil.ComponentStyle.SMALL);
+        JPanel panel = FormBuilder.createFormBuilder()
+                .addLabeledComponent("Expand only packages matching:", new JBScrollPane(includeArea), true)
+                .addLabeledComponent("Never expand packages matching:", new JBScrollPane(excludeArea), true)
+                .addComponent(hint)
+                .addLabeledComponent("Maximum depth (0 for unlimited):", depthSpinner)
+                .addComponent(speculativeCheckBox)
+                .addComponentFillVertically(new JPanel(), 0)
+                .getPanel();
+        reset();
+        return panel;
+    }
+
+    @Override
+    public boolean isModified() {
+        GoStructCopySettings.SettingsState state = GoStructCopySettings.getInstance(project).getState();
+        return !parsePatterns(includeArea.getText()).equals(state.includePackages)
+                || !parsePatterns(excludeArea.getText()).equals(state.excludePackages)
+                || (Integer) depthSpinner.getValue() != state.maxDepth
+                || speculativeCheckBox.isSelected() != state.speculativeExpansion;
+    }
+
+    @Override
+    public void apply() {
+        GoStructCopySettings.SettingsState state = new GoStructCopySettings.SettingsState();
+        state.includePackages = parsePatterns(includeArea.getText());
+        state.excludePackages = parsePatterns(excludeArea.getText());
+        state.maxDepth = (Integer) depthSpinner.getValue();
+        state.speculativeExpansion = speculativeCheckBox.isSelected();
+        GoStructCopySettings.getInstance(project).loadState(state);
+    }
+
+    @Override
+    public void reset() {
+        GoStructCopySettings.SettingsState state = GoStructCopySettings.getInstance(project).getState();
+        includeArea.setText(StringUtil.join(state.includePackages, "\n"));
+        excludeArea.setText(StringUtil.join(state.excludePackages, "\n"));
+        depthSpinner.setValue(state.maxDepth);
+        speculativeCheckBox.setSelected(state.speculativeExpansion);
+    }
+
+    @Override
+    public void disposeUIResources() {
+        includeArea = null;
+        excludeArea = null;
+        depthSpinner = null;
+        speculativeCheckBox = null;
+    }
+
+    @NotNull
+    private static List<String> parsePatterns(@NotNull String text) {
+        List<String> result = new ArrayList<>();
+        for (String line : StringUtil.splitByLines(text)) {
+            String pattern = line.trim();
+            if (!pattern.isEmpty()) {
+                result.add(pattern);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package com.loliwolf.gostructcopy.settings;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.loliwolf.gostructcopy.core.GoPackageFilter;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-project limits on how far structs are expanded, and whether structs are expanded ahead of time.
+ */
+@Service(Service.Level.PROJECT)
+@State(name = "GoStructCopySettings", storages = @Storage("goStructCopy.xml"))
+public final class GoStructCopySettings implements PersistentStateComponent<GoStructCopySettings.SettingsState> {
+    private SettingsState state = new SettingsState();
+    private @Nullable GoStructCopyOptions options;
+
+    @NotNull
+    public static GoStructCopySettings getInstance(@NotNull Project project) {
+        return project.getService(GoStructCopySettings.class);
+    }
+
+    @Override
+    public @NotNull SettingsState getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull SettingsState state) {
+        this.state = state;
+        this.options = null;
+    }
+
+    /**
+     * The options for new processors. The package filter is compiled once per settings change, so callers can compare
+     * the returned instance to tell whether the settings changed since they last asked.
+     */
+    @NotNull
+    public synchronized GoStructCopyOptions getOptions() {
+        if (options == null) {
+            GoPackageFilter filter = GoPackageFilter.compile(state.includePackages, state.excludePackages);
+            options = new GoStructCopyOptions(filter, Math.max(0, state.maxDepth));
+        }
+        return options;
+    }
+
+    public synchronized boolean isSpeculativeExpansionEnabled() {
+        return state.speculativeExpansion;
+    }
+
+    public static final class SettingsState {
+        public List<String> includePackages = new ArrayList<>();
+        public List<String> excludePackages = new ArrayList<>();
+        public int maxDepth = 0;
+        public boolean speculativeExpansion = true;
+    }
+}
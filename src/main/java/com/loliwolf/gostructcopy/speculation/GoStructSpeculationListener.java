@@ -0,0 +1,22 @@
+package com.loliwolf.gostructcopy.speculation;
+
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Starts a speculation round whenever another editor gains focus.
+ */
+public final class GoStructSpeculationListener implements FileEditorManagerListener {
+    private final Project project;
+
+    public GoStructSpeculationListener(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void selectionChanged(@NotNull FileEditorManagerEvent event) {
+        GoStructSpeculator.getInstance(project).schedule(event.getNewEditor());
+    }
+}
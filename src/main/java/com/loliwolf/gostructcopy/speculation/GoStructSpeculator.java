@@ -0,0 +1,223 @@
+package com.loliwolf.gostructcopy.speculation;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoStructType;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.ide.IdeEventQueue;
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.fileEditor.TextEditor;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructResultCache;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expands the structs of the focused Go editor ahead of time, so that the first copy is served from
+ * {@link GoStructResultCache}. Work runs on a single background thread in a non-blocking read action, so any write
+ * action cancels and restarts it; it also steps aside while the user is typing or scrolling, and gives up once its CPU
+ * budget for the editor is spent, even in the middle of an expansion, the heap is getting full, or power-save mode is on.
+ */
+@Service(Service.Level.PROJECT)
+public final class GoStructSpeculator implements Disposable {
+    private static final int START_DELAY_MS = 500;
+    private static final int RETRY_DELAY_MS = 1000;
+    private static final long CPU_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(300);
+    private static final long MIN_USER_IDLE_MS = 300;
+    private static final double MAX_HEAP_USAGE = 0.75;
+
+    private final Project project;
+    private final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Go Struct Speculation", 1);
+
+    public GoStructSpeculator(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static GoStructSpeculator getInstance(@NotNull Project project) {
+        return project.getService(GoStructSpeculator.class);
+    }
+
+    /**
+     * Starts a new speculation round for {@code fileEditor}, cancelling the previous one. Called on the EDT.
+     */
+    public void schedule(@Nullable FileEditor fileEditor) {
+        alarm.cancelAllRequests();
+        if (!(fileEditor instanceof TextEditor textEditor) || !isEnabled()) {
+            return;
+        }
+        Round round = new Round(textEditor.getEditor());
+        alarm.addRequest(() -> start(round), START_DELAY_MS);
+    }
+
+    private boolean isEnabled() {
+        return GoStructCopySettings.getInstance(project).isSpeculativeExpansionEnabled() && !PowerSaveMode.isEnabled();
+    }
+
+    private void start(@NotNull Round round) {
+        Editor editor = round.editor;
+        if (editor.isDisposed() || !isEnabled()) {
+            return;
+        }
+        PsiFile file = PsiDocumentManager.getInstance(project).getPsiFile(editor.getDocument());
+        if (!(file instanceof GoFile goFile)) {
+            return;
+        }
+        int caretOffset = editor.getCaretModel().getOffset();
+        TextRange visibleRange = visibleRange(editor);
+        GoStructCopyProcessor processor = GoStructCopyProcessor.forSmartMode(project, GoStructCopySettings.getInstance(project).getOptions());
+        ReadAction.nonBlocking(() -> speculate(round, processor, goFile, caretOffset, visibleRange))
+                .inSmartMode(project)
+                .expireWith(this)
+                .coalesceBy(this)
+                .finishOnUiThread(ModalityState.defaultModalityState(), yielded -> {
+                    if (yielded) {
+                        alarm.addRequest(() -> start(round), RETRY_DELAY_MS);
+                    }
+                })
+                .submit(executor);
+    }
+
+    /**
+     * @return whether the round stepped aside for user activity and should be retried later
+     */
+    private boolean speculate(@NotNull Round round,
+                              @NotNull GoStructCopyProcessor processor,
+                              @NotNull GoFile file,
+                              int caretOffset,
+                              @NotNull TextRange visibleRange) {
+        if (!file.isValid()) {
+            return false;
+        }
+        List<GoTypeSpec> targets = new ArrayList<>();
+        GoTypeSpec atCaret = processor.findTypeSpecAtCaret(file, caretOffset);
+        if (atCaret != null) {
+            targets.add(atCaret);
+        }
+        for (GoTypeSpec spec : file.getTypes()) {
+            if (!targets.contains(spec) && visibleRange.intersects(spec.getTextRange())) {
+                targets.add(spec);
+            }
+        }
+
+        GoStructResultCache cache = GoStructResultCache.getInstance(project);
+        for (GoTypeSpec spec : targets) {
+            ProgressManager.checkCanceled();
+            if (IdeEventQueue.getInstance().getIdleTime() < MIN_USER_IDLE_MS) {
+                return true;
+            }
+            if (round.cpuNanos >= CPU_BUDGET_NANOS || cache.isFull() || isHeapTight() || PowerSaveMode.isEnabled()) {
+                return false;
+            }
+            if (!(spec.getSpecType().getType() instanceof GoStructType)) {
+                continue;
+            }
+            // The budget is checked inside the expansion too, a single large closure can take far longer than it
+            BudgetIndicator budget = new BudgetIndicator(ProgressManager.getInstance().getProgressIndicator(), round);
+            try {
+                ProgressManager.getInstance().runProcess(() -> processor.expandCached(spec), budget);
+            } catch (ProcessCanceledException e) {
+                if (!budget.isSpent()) {
+                    throw e;
+                }
+                return false;
+            } finally {
+                round.cpuNanos += cpuTime() - budget.started;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private static TextRange visibleRange(@NotNull Editor editor) {
+        Rectangle area = editor.getScrollingModel().getVisibleArea();
+        int start = editor.logicalPositionToOffset(editor.xyToLogicalPosition(area.getLocation()));
+        int end = editor.logicalPositionToOffset(editor.xyToLogicalPosition(new Point(area.x + area.width, area.y + area.height)));
+        return new TextRange(start, Math.max(start, end));
+    }
+
+    private static boolean isHeapTight() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * MAX_HEAP_USAGE;
+    }
+
+    private static long cpuTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    /**
+     * Cancels the expansion it runs once the round's CPU budget is spent, and with the read action it runs in.
+     */
+    private static final class BudgetIndicator extends SensitiveProgressWrapper {
+        // Reading the thread's CPU time is a system call, so it is only read every so many checks
+        private static final int CHECK_INTERVAL_MASK = 0xFF;
+
+        final long started = cpuTime();
+        private final long limit;
+        private int checks;
+        private volatile boolean spent;
+
+        BudgetIndicator(@Nullable ProgressIndicator original, @NotNull Round round) {
+            super(original != null ? original : new EmptyProgressIndicator());
+            this.limit = started + CPU_BUDGET_NANOS - round.cpuNanos;
+        }
+
+        boolean isSpent() {
+            return spent;
+        }
+
+        @Override
+        public void checkCanceled() {
+            if ((++checks & CHECK_INTERVAL_MASK) == 0 && cpuTime() >= limit) {
+                spent = true;
+                cancel();
+            }
+            super.checkCanceled();
+        }
+    }
+
+    /**
+     * Speculation for one editor focus; the CPU budget is shared by all retries of the round.
+     */
+    private static final class Round {
+        final Editor editor;
+        volatile long cpuNanos;
+
+        Round(@NotNull Editor editor) {
+            this.editor = editor;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.loliwolf.gostructcopy.ui;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.JBUI;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructExpansion;
+import com.loliwolf.gostructcopy.settings.GoStructCopySettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JPanel;
+import java.awt.BorderLayout;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Live view of a pinned struct. PSI changes are collected and, after a short delay, only the definitions whose source
+ * changed (plus the ones referencing them) are re-rendered and patched into the document.
+ */
+public final class GoStructPreviewPanel extends JPanel implements Disposable {
+    private static final int REFRESH_DELAY_MS = 300;
+
+    private final Project project;
+    private final Document document;
+    private final Editor editor;
+    private final JBLabel statusLabel = new JBLabel();
+    private final Alarm refreshAlarm;
+    // Only touched on the EDT: PSI events, the alarm and the UI callback all run there.
+    private final Set<PsiElement> pendingChanges = new LinkedHashSet<>();
+    private boolean rebuildRequested;
+    private @Nullable SmartPsiElementPointer<GoTypeSpec> pinned;
+    private @Nullable GoStructExpansion expansion;
+    private @Nullable GoStructCopyOptions expansionOptions;
+
+    public GoStructPreviewPanel(@NotNull Project project) {
+        super(new BorderLayout());
+        this.project = project;
+        this.document = EditorFactory.getInstance().createDocument("");
+        this.editor = EditorFactory.getInstance().createViewer(document, project);
+        this.refreshAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+
+        ((EditorEx) editor).setHighlighter(EditorHighlighterFactory.getInstance()
+                .createEditorHighlighter(project, FileTypeManager.getInstance().getFileTypeByExtension("go")));
+        editor.getSettings().setLineNumbersShown(false);
+        editor.getSettings().setFoldingOutlineShown(false);
+        editor.getSettings().setAdditionalLinesCount(0);
+
+        statusLabel.setBorder(JBUI.Borders.empty(4, 8));
+        add(statusLabel, BorderLayout.NORTH);
+        add(editor.getComponent(), BorderLayout.CENTER);
+        statusLabel.setText("Use \"Preview Go Struct (Live)\" on a struct to pin it here.");
+
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+            @Override
+            public void childAdded(@NotNull PsiTreeChangeEvent event) {
+                onPsiChange(event);
+            }
+
+            @Override
+            public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+                onPsiChange(event);
+            }
+
+            @Override
+            public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+                onPsiChange(event);
+            }
+
+            @Override
+            public void childMoved(@NotNull PsiTreeChangeEvent event) {
+                onPsiChange(event);
+            }
+
+            @Override
+            public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+                onPsiChange(event);
+            }
+        }, this);
+    }
+
+    public void pin(@NotNull GoTypeSpec spec) {
+        pinned = SmartPointerManager.createPointer(spec);
+        expansion = null;
+        pendingChanges.clear();
+        rebuildRequested = false;
+        scheduleRefresh(0);
+    }
+
+    private void onPsiChange(@NotNull PsiTreeChangeEvent event) {
+        if (pinned == null) {
+            return;
+        }
+        PsiFile file = event.getFile();
+        if (file != null && !(file instanceof GoFile)) {
+            return;
+        }
+        PsiElement parent = event.getParent();
+        PsiElement changed = parent != null && parent.isValid() ? parent : file;
+        if (changed == null) {
+            // Directory-level events (files moved or deleted) can change resolution anywhere in the closure.
+            rebuildRequested = true;
+        } else {
+            pendingChanges.add(changed);
+        }
+        scheduleRefresh(REFRESH_DELAY_MS);
+    }
+
+    private void scheduleRefresh(int delay) {
+        refreshAlarm.cancelAllRequests();
+        refreshAlarm.addRequest(this::refresh, delay);
+    }
+
+    private void refresh() {
+        SmartPsiElementPointer<GoTypeSpec> root = pinned;
+        if (root == null) {
+            return;
+        }
+        GoStructCopyOptions options = GoStructCopySettings.getInstance(project).getOptions();
+        GoStructCopyProcessor processor = GoStructCopyProcessor.forSmartMode(project, options);
+        GoStructExpansion current = expansion;
+        // An expansion made under different settings cannot be patched, only replaced
+        GoStructExpansion previous = rebuildRequested || options != expansionOptions ? null : current;
+        List<PsiElement> changes = new ArrayList<>(pendingChanges);
+        boolean rebuild = rebuildRequested;
+        // Changes stay pending until applied, so a computation superseded through coalesceBy loses nothing.
+        ReadAction.nonBlocking(() -> compute(processor, root, previous, changes))
+                .inSmartMode(project)
+                .expireWith(this)
+                .coalesceBy(this)
+                .finishOnUiThread(ModalityState.defaultModalityState(),
+                        update -> apply(root, current, previous, options, changes, rebuild, update))
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    @Nullable
+    private static GoStructExpansion compute(@NotNull GoStructCopyProcessor processor,
+                                             @NotNull SmartPsiElementPointer<GoTypeSpec> root,
+                                             @Nullable GoStructExpansion previous,
+                                             @NotNull List<PsiElement> changes) {
+        if (previous == null) {
+            GoTypeSpec spec = root.getElement();
+            return spec != null ? processor.expandTracked(spec) : null;
+        }
+        return processor.refresh(previous, previous.findAffectedEntries(changes));
+    }
+
+    private void apply(@NotNull SmartPsiElementPointer<GoTypeSpec> root,
+                       @Nullable GoStructExpansion current,
+                       @Nullable GoStructExpansion previous,
+                       @NotNull GoStructCopyOptions options,
+                       @NotNull List<PsiElement> applied,
+                       boolean rebuild,
+                       @Nullable GoStructExpansion update) {
+        if (root != pinned) {
+            return;
+        }
+        if (current != expansion) {
+            // Computed against an expansion that has been replaced meanwhile; recompute from the current one.
+            scheduleRefresh(REFRESH_DELAY_MS);
+            return;
+        }
+        pendingChanges.removeAll(applied);
+        if (rebuild) {
+            rebuildRequested = false;
+        }
+        expansion = update;
+        expansionOptions = options;
+
+        if (update == null) {
+            WriteAction.run(() -> document.setText(""));
+            statusLabel.setText("The pinned struct no longer exists.");
+        } else if (previous == null || update.isRebuilt() || previous.getEntries().size() != update.getEntries().size()) {
+            WriteAction.run(() -> document.setText(update.getText()));
+            statusLabel.setText(update.getRootName() + ": " + update.getEntries().size() + " definitions");
+        } else if (update != previous) {
+            List<Integer> changed = new ArrayList<>(update.getChangedEntries());
+            WriteAction.run(() -> {
+                // Patch from the end so the offsets of earlier entries stay valid.
+                for (int i = changed.size() - 1; i >= 0; i--) {
+                    int index = changed.get(i);
+                    int start = previous.getOffset(index);
+                    int end = start + previous.getEntries().get(index).text().length();
+                    document.replaceString(start, end, update.getEntries().get(index).text());
+                }
+            });
+            statusLabel.setText(update.getRootName() + ": " + update.getEntries().size() + " definitions, "
+                    + changed.size() + " updated");
+        }
+
+        if (!pendingChanges.isEmpty() || rebuildRequested) {
+            scheduleRefresh(REFRESH_DELAY_MS);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        EditorFactory.getInstance().releaseEditor(editor);
+    }
+}
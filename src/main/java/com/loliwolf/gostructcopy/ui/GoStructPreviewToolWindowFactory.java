@@ -0,0 +1,31 @@
+package com.loliwolf.gostructcopy.ui;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class GoStructPreviewToolWindowFactory implements ToolWindowFactory, DumbAware {
+    public static final String TOOL_WINDOW_ID = "Go Struct Preview";
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        GoStructPreviewPanel panel = new GoStructPreviewPanel(project);
+        Content content = ContentFactory.getInstance().createContent(panel, "", false);
+        content.setDisposer(panel);
+        toolWindow.getContentManager().addContent(content);
+    }
+
+    @Nullable
+    public static GoStructPreviewPanel findPanel(@NotNull ToolWindow toolWindow) {
+        Content content = toolWindow.getContentManager().getContent(0);
+        if (content != null && content.getComponent() instanceof GoStructPreviewPanel panel) {
+            return panel;
+        }
+        return null;
+    }
+}
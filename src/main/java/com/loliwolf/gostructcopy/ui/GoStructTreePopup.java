@@ -0,0 +1,301 @@
+package com.loliwolf.gostructcopy.ui;
+
+import com.goide.psi.GoStructType;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopup;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.ui.CheckboxTree;
+import com.intellij.ui.CheckedTreeNode;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.JBUI;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructField;
+import com.loliwolf.gostructcopy.core.GoStructSelection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.JTree;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.awt.BorderLayout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Shows a struct as a tree of fields. Nested types are only resolved when their node is expanded, and the copy covers
+ * exactly the checked fields of the nodes that were opened.
+ */
+public final class GoStructTreePopup {
+    private final Project project;
+    private final GoStructCopyProcessor processor;
+    private final SmartPsiElementPointer<GoTypeSpec> root;
+    private final CheckedTreeNode rootNode;
+    private final DefaultTreeModel model;
+    private final CheckboxTree tree;
+
+    private GoStructTreePopup(@NotNull Project project,
+                              @NotNull GoStructCopyProcessor processor,
+                              @NotNull GoTypeSpec root,
+                              @NotNull List<GoStructField> rootFields) {
+        this.project = project;
+        this.processor = processor;
+        this.root = SmartPointerManager.createPointer(root);
+        this.rootNode = new CheckedTreeNode(new Item("type " + root.getName(), null, null, null, List.of(), null));
+        this.tree = new CheckboxTree(new Renderer(), rootNode, new CheckboxTree.CheckPolicy(true, true, true, false));
+        this.model = (DefaultTreeModel) tree.getModel();
+        addFields(rootNode, this.root, rootFields, true);
+        model.nodeStructureChanged(rootNode);
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) {
+                if (event.getPath().getLastPathComponent() instanceof CheckedTreeNode node) {
+                    load(node);
+                }
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) {
+            }
+        });
+    }
+
+    /**
+     * Must be called inside a read action; {@code onCopy} is invoked on the EDT with the result of the copy.
+     */
+    public static void show(@NotNull Project project,
+                            @NotNull Editor editor,
+                            @NotNull GoStructCopyProcessor processor,
+                            @NotNull GoTypeSpec root,
+                            @NotNull Consumer<GoStructCopyResult> onCopy) {
+        GoStructTreePopup treePopup = new GoStructTreePopup(project, processor, root, processor.describeFields(root));
+        JButton copyButton = new JButton("Copy Checked");
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(ScrollPaneFactory.createScrollPane(treePopup.tree), BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new BorderLayout());
+        buttons.setBorder(JBUI.Borders.empty(4));
+        buttons.add(copyButton, BorderLayout.EAST);
+        panel.add(buttons, BorderLayout.SOUTH);
+        panel.setPreferredSize(JBUI.size(420, 360));
+
+        JBPopup popup = JBPopupFactory.getInstance()
+                .createComponentPopupBuilder(panel, treePopup.tree)
+                .setTitle("Copy Go Struct: " + root.getName())
+                .setResizable(true)
+                .setMovable(true)
+                .setRequestFocus(true)
+                .createPopup();
+        copyButton.addActionListener(e -> {
+            popup.closeOk(null);
+            treePopup.copy(onCopy);
+        });
+        popup.showInBestPositionFor(editor);
+    }
+
+    private void addFields(@NotNull CheckedTreeNode parent,
+                           @NotNull SmartPsiElementPointer<? extends PsiElement> container,
+                           @NotNull List<GoStructField> fields,
+                           boolean checked) {
+        SmartPointerManager pointers = SmartPointerManager.getInstance(project);
+        for (GoStructField field : fields) {
+            List<SmartPsiElementPointer<GoTypeSpec>> nested = new ArrayList<>();
+            for (GoTypeSpec spec : field.nestedSpecs()) {
+                nested.add(pointers.createSmartPsiElementPointer(spec));
+            }
+            SmartPsiElementPointer<GoStructType> anonymous = field.anonymousStruct() != null
+                    ? pointers.createSmartPsiElementPointer(field.anonymousStruct())
+                    : null;
+            String label = field.name() != null ? field.name() + " " + field.typeText() : field.typeText();
+            Item item = new Item(label, field.tag(), field.key(), container, nested, anonymous);
+            CheckedTreeNode node = new CheckedTreeNode(item);
+            node.setChecked(checked);
+            if (item.isExpandable()) {
+                node.add(new DefaultMutableTreeNode("Loading..."));
+            } else {
+                item.loaded = true;
+            }
+            parent.add(node);
+        }
+    }
+
+    private void load(@NotNull CheckedTreeNode node) {
+        Item item = (Item) node.getUserObject();
+        if (item.loaded || item.loading) {
+            return;
+        }
+        item.loading = true;
+        ReadAction.nonBlocking(() -> resolveChildren(item))
+                .inSmartMode(project)
+                .finishOnUiThread(ModalityState.stateForComponent(tree), children -> {
+                    item.loading = false;
+                    item.loaded = true;
+                    node.removeAllChildren();
+                    for (Children child : children) {
+                        if (child.typeNode()) {
+                            CheckedTreeNode typeNode = new CheckedTreeNode(new Item("type " + child.name(), null, null, child.container(), List.of(), null));
+                            typeNode.setChecked(node.isChecked());
+                            addFields(typeNode, child.container(), child.fields(), node.isChecked());
+                            ((Item) typeNode.getUserObject()).loaded = true;
+                            node.add(typeNode);
+                        } else {
+                            addFields(node, child.container(), child.fields(), node.isChecked());
+                        }
+                    }
+                    model.nodeStructureChanged(node);
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    @NotNull
+    private List<Children> resolveChildren(@NotNull Item item) {
+        List<Children> result = new ArrayList<>();
+        if (item.anonymousStruct != null) {
+            GoStructType structType = item.anonymousStruct.getElement();
+            if (structType != null) {
+                result.add(new Children(null, item.anonymousStruct, processor.describeFields(structType), false));
+            }
+        }
+        boolean single = result.isEmpty() && item.nestedSpecs.size() == 1;
+        for (SmartPsiElementPointer<GoTypeSpec> pointer : item.nestedSpecs) {
+            GoTypeSpec spec = pointer.getElement();
+            if (spec != null) {
+                result.add(new Children(spec.getName(), pointer, processor.describeFields(spec), !single));
+            }
+        }
+        return result;
+    }
+
+    private void copy(@NotNull Consumer<GoStructCopyResult> onCopy) {
+        List<Selected> selected = new ArrayList<>();
+        collectSelected(rootNode, root, selected);
+        ReadAction.nonBlocking(() -> {
+                    GoTypeSpec spec = root.getElement();
+                    if (spec == null) {
+                        return GoStructCopyResult.failure(GoStructCopyProcessor.NOT_FOUND_ERROR);
+                    }
+                    GoStructSelection selection = new GoStructSelection();
+                    selection.include(spec);
+                    for (Selected entry : selected) {
+                        PsiElement container = entry.container().getElement();
+                        if (container == null) {
+                            continue;
+                        }
+                        if (entry.fieldKey() != null) {
+                            selection.select(container, entry.fieldKey());
+                        } else {
+                            selection.include(container);
+                        }
+                    }
+                    return processor.expandSelection(spec, selection);
+                })
+                .inSmartMode(project)
+                .finishOnUiThread(ModalityState.defaultModalityState(), onCopy)
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * Walks the checked part of the tree. {@code container} is the struct owning the field children of {@code node};
+     * type nodes carry their own container.
+     */
+    private static void collectSelected(@NotNull CheckedTreeNode node,
+                                        @Nullable SmartPsiElementPointer<? extends PsiElement> container,
+                                        @NotNull List<Selected> result) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (!(node.getChildAt(i) instanceof CheckedTreeNode child) || !child.isChecked()) {
+                continue;
+            }
+            Item item = (Item) child.getUserObject();
+            if (item.key == null) {
+                // Type node grouping the fields of one of several nested structs
+                if (item.container != null) {
+                    result.add(new Selected(item.container, null));
+                    collectSelected(child, item.container, result);
+                }
+                continue;
+            }
+            if (container == null) {
+                continue;
+            }
+            result.add(new Selected(container, item.key));
+            if (!item.loaded || child.getChildCount() == 0) {
+                continue;
+            }
+            SmartPsiElementPointer<? extends PsiElement> fieldContainer = item.anonymousStruct != null
+                    ? item.anonymousStruct
+                    : item.nestedSpecs.size() == 1 ? item.nestedSpecs.get(0) : null;
+            if (fieldContainer != null) {
+                result.add(new Selected(fieldContainer, null));
+            }
+            collectSelected(child, fieldContainer, result);
+        }
+    }
+
+    private static final class Item {
+        final @NotNull String label;
+        final @Nullable String tag;
+        final @Nullable String key;
+        final @Nullable SmartPsiElementPointer<? extends PsiElement> container;
+        final @NotNull List<SmartPsiElementPointer<GoTypeSpec>> nestedSpecs;
+        final @Nullable SmartPsiElementPointer<GoStructType> anonymousStruct;
+        boolean loaded;
+        boolean loading;
+
+        Item(@NotNull String label,
+             @Nullable String tag,
+             @Nullable String key,
+             @Nullable SmartPsiElementPointer<? extends PsiElement> container,
+             @NotNull List<SmartPsiElementPointer<GoTypeSpec>> nestedSpecs,
+             @Nullable SmartPsiElementPointer<GoStructType> anonymousStruct) {
+            this.label = label;
+            this.tag = tag;
+            this.key = key;
+            this.container = container;
+            this.nestedSpecs = nestedSpecs;
+            this.anonymousStruct = anonymousStruct;
+        }
+
+        boolean isExpandable() {
+            return anonymousStruct != null || !nestedSpecs.isEmpty();
+        }
+    }
+
+    private record Children(@Nullable String name,
+                            @NotNull SmartPsiElementPointer<? extends PsiElement> container,
+                            @NotNull List<GoStructField> fields,
+                            boolean typeNode) {
+    }
+
+    private record Selected(@NotNull SmartPsiElementPointer<? extends PsiElement> container, @Nullable String fieldKey) {
+    }
+
+    private static final class Renderer extends CheckboxTree.CheckboxTreeCellRenderer {
+        @Override
+        public void customizeRenderer(JTree tree, Object value, boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
+            if (!(value instanceof DefaultMutableTreeNode node)) {
+                return;
+            }
+            if (node.getUserObject() instanceof Item item) {
+                getTextRenderer().append(item.label);
+                if (item.tag != null) {
+                    getTextRenderer().append(" " + item.tag, SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                }
+            } else {
+                getTextRenderer().append(String.valueOf(node.getUserObject()), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            }
+        }
+    }
+}
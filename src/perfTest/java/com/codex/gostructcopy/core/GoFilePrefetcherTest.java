@@ -0,0 +1,69 @@
+package com.codex.gostructcopy.core;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.PsiManagerEx;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.loliwolf.gostructcopy.core.GoFilePrefetcher;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The prefetcher on real Go PSI: it needs real non-blocking read actions and real file trees to load, so it is checked
+ * here rather than with mocks. Run with {@code ./gradlew perfTest}.
+ */
+public class GoFilePrefetcherTest extends BasePlatformTestCase {
+    private static final int TIMEOUT_SECONDS = 10;
+
+    public void testParsesTheFilesOfImportedPackages() {
+        VirtualFile rootFile = null;
+        List<VirtualFile> imported = new ArrayList<>();
+        for (Map.Entry<String, String> file : GoFixtures.nameClashes(3).entrySet()) {
+            PsiFile psiFile = myFixture.addFileToProject(file.getKey(), file.getValue());
+            if (GoFixtures.ROOT_FILE.equals(file.getKey())) {
+                rootFile = psiFile.getVirtualFile();
+            } else if (file.getKey().endsWith(".go")) {
+                imported.add(psiFile.getVirtualFile());
+            }
+        }
+        assertNotNull(rootFile);
+
+        // Drop the trees loaded while the fixture was written, so that only the prefetcher can load them again
+        PsiManagerEx.getInstanceEx(getProject()).dropPsiCaches();
+        for (VirtualFile file : imported) {
+            assertFalse(file.getPath(), isLoaded(file));
+        }
+
+        GoFilePrefetcher.getInstance(getProject()).prefetch(findRoot(rootFile), GoStructCopyOptions.DEFAULT);
+
+        PlatformTestUtil.waitWithEventsDispatching("Imported packages were not parsed",
+                () -> imported.stream().allMatch(this::isLoaded), TIMEOUT_SECONDS);
+    }
+
+    private GoTypeSpec findRoot(VirtualFile rootFile) {
+        return ReadAction.compute(() -> {
+            GoFile file = (GoFile) PsiManager.getInstance(getProject()).findFile(rootFile);
+            assertNotNull(file);
+            for (GoTypeSpec spec : file.getTypes()) {
+                if ("Root".equals(spec.getName())) {
+                    return spec;
+                }
+            }
+            throw new AssertionError("No Root in " + file.getName());
+        });
+    }
+
+    private boolean isLoaded(VirtualFile file) {
+        return ReadAction.compute(() -> PsiManager.getInstance(getProject()).findFile(file) instanceof PsiFileImpl fileImpl
+                && fileImpl.getTreeElement() != null);
+    }
+}
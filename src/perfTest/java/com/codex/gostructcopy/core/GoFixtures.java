@@ -0,0 +1,114 @@
+package com.codex.gostructcopy.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Synthetic Go modules for the performance tests, as file contents by path. The root struct of every fixture is
+ * {@code Root} in {@link #ROOT_FILE}.
+ */
+final class GoFixtures {
+    static final String ROOT_FILE = "main.go";
+    static final String MODULE = "example.com/fixture";
+
+    private GoFixtures() {
+    }
+
+    /**
+     * A chain {@code Root -> T1 -> ... -> T<depth>}, every link being a field of the previous struct.
+     */
+    static Map<String, String> deepNesting(int depth) {
+        StringBuilder text = new StringBuilder("package fixture\n\n");
+        for (int i = 0; i <= depth; i++) {
+            text.append("type ").append(i == 0 ? "Root" : "T" + i).append(" struct {\n");
+            text.append("\tID   int64  `json:\"id\" db:\"id\"`\n");
+            text.append("\tName string `json:\"name\"`\n");
+            if (i < depth) {
+                text.append("\tNext *T").append(i + 1).append(" `json:\"next\"`\n");
+            }
+            text.append("}\n\n");
+        }
+        return module(Map.of(ROOT_FILE, text.toString()));
+    }
+
+    /**
+     * A root referencing {@code count} distinct leaf structs, spread over files of a hundred types each like a large
+     * generated package.
+     */
+    static Map<String, String> fanOut(int count) {
+        Map<String, String> files = new LinkedHashMap<>();
+        StringBuilder root = new StringBuilder("package fixture\n\ntype Root struct {\n");
+        for (int i = 0; i < count; i++) {
+            root.append("\tLeaf").append(i).append(" Leaf").append(i).append(" `json:\"leaf").append(i).append("\"`\n");
+        }
+        files.put(ROOT_FILE, root.append("}\n").toString());
+
+        for (int file = 0; file * 100 < count; file++) {
+            StringBuilder text = new StringBuilder("package fixture\n\n");
+            for (int i = file * 100; i < Math.min(count, (file + 1) * 100); i++) {
+                text.append("type Leaf").append(i).append(" struct {\n");
+                text.append("\tID      int64             `json:\"id\"`\n");
+                text.append("\tLabels  map[string]string `json:\"labels\"`\n");
+                text.append("\tWeights []float64         `json:\"weights\"`\n");
+                text.append("}\n\n");
+            }
+            files.put("leaves" + file + ".go", text.toString());
+        }
+        return module(files);
+    }
+
+    /**
+     * {@code packages} packages declaring the same {@code Item}, {@code Meta} and {@code Status} types, all referenced
+     * from the root, so that every name is contested.
+     */
+    static Map<String, String> nameClashes(int packages) {
+        Map<String, String> files = new LinkedHashMap<>();
+        StringBuilder root = new StringBuilder("package fixture\n\nimport (\n");
+        for (int i = 0; i < packages; i++) {
+            root.append("\t\"").append(MODULE).append("/pkg").append(i).append("\"\n");
+        }
+        root.append(")\n\ntype Root struct {\n");
+        for (int i = 0; i < packages; i++) {
+            root.append("\tItem").append(i).append(" pkg").append(i).append(".Item `json:\"item").append(i).append("\"`\n");
+        }
+        files.put(ROOT_FILE, root.append("}\n").toString());
+
+        for (int i = 0; i < packages; i++) {
+            files.put("pkg" + i + "/types.go", "package pkg" + i + "\n\n"
+                    + "type Status string\n\n"
+                    + "type Meta struct {\n\tVersion int `json:\"version\"`\n}\n\n"
+                    + "type Item struct {\n\tMeta   Meta   `json:\"meta\"`\n\tStatus Status `json:\"status\"`\n}\n");
+        }
+        return module(files);
+    }
+
+    /**
+     * A root made of nested anonymous structs, {@code breadth} fields per level and {@code depth} levels deep.
+     */
+    static Map<String, String> anonymousForest(int depth, int breadth) {
+        StringBuilder text = new StringBuilder("package fixture\n\ntype Root ");
+        appendAnonymous(text, depth, breadth, 0);
+        return module(Map.of(ROOT_FILE, text.append('\n').toString()));
+    }
+
+    private static void appendAnonymous(StringBuilder text, int depth, int breadth, int level) {
+        String indent = "\t".repeat(level + 1);
+        text.append("struct {\n");
+        text.append(indent).append("ID int64 `json:\"id\"`\n");
+        if (level < depth) {
+            for (int i = 0; i < breadth; i++) {
+                text.append(indent).append("Node").append(i).append(' ');
+                appendAnonymous(text, depth, breadth, level + 1);
+                text.append(" `json:\"node").append(i).append("\"`\n");
+            }
+        }
+        text.append("\t".repeat(level)).append('}');
+    }
+
+    private static Map<String, String> module(Map<String, String> files) {
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("go.mod", "module " + MODULE + "\n\ngo 1.21\n");
+        result.putAll(files);
+        return result;
+    }
+}
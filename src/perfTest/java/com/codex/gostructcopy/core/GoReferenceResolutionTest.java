@@ -0,0 +1,172 @@
+package com.codex.gostructcopy.core;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.loliwolf.gostructcopy.core.GoResolveCache;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import com.loliwolf.gostructcopy.core.GoStructStatistics;
+
+/**
+ * How references are bound on real Go PSI: package-local names from the package's own symbol table, without
+ * {@code resolve()}, everything that could shadow or duplicate them through the IDE's resolver, and the resolution
+ * cache in front of it. The cases depend on real parent chains, build constraints and imports, so they are checked here
+ * rather than with mocks. Run with {@code ./gradlew perfTest}.
+ */
+public class GoReferenceResolutionTest extends BasePlatformTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addFileToProject("go.mod", "module " + GoFixtures.MODULE + "\n\ngo 1.21\n");
+    }
+
+    public void testBindsPackageLocalTypesWithoutResolve() {
+        GoFile root = addFile("main.go", "package fixture\n\ntype Root struct {\n\tHome Address\n}\n");
+        addFile("address.go", "package fixture\n\ntype Address struct {\n\tStreet string\n}\n");
+
+        long resolves = resolveCalls();
+        GoStructCopyResult result = expand(root, "Root");
+
+        assertEquals("""
+                type Root struct {
+                \tHome Address
+                }
+
+                type Address struct {
+                \tStreet string
+                }
+                """, result.content());
+        assertEquals(resolves, resolveCalls());
+    }
+
+    public void testLeavesNamesDeclaredTwiceToTheResolver() {
+        GoFile root = addFile("main.go", "package fixture\n\ntype Root struct {\n\tHandle Handle\n}\n");
+        addFile("handle_linux.go", "//go:build linux\n\npackage fixture\n\ntype Handle struct {\n\tFd int\n}\n");
+        addFile("handle_windows.go", "//go:build windows\n\npackage fixture\n\ntype Handle struct {\n\tPtr uintptr\n}\n");
+
+        long resolves = resolveCalls();
+        GoStructCopyResult result = expand(root, "Root");
+
+        assertTrue(result.message(), result.success());
+        assertTrue(resolveCalls() > resolves);
+    }
+
+    public void testLocalTypesShadowPackageTypes() {
+        GoFile file = addFile("main.go", """
+                package fixture
+
+                type Item struct {
+                \tPackageLevel string
+                }
+
+                func build() {
+                \ttype Item struct {
+                \t\tLocal int
+                \t}
+                \ttype Box struct {
+                \t\tItem Item
+                \t}
+                }
+                """);
+
+        GoStructCopyResult result = expand(file, "Box");
+
+        assertTrue(result.message(), result.success());
+        assertTrue(result.content(), result.content().contains("Local int"));
+        assertFalse(result.content(), result.content().contains("PackageLevel"));
+    }
+
+    public void testTypeParametersShadowPackageTypes() {
+        GoFile file = addFile("main.go", """
+                package fixture
+
+                type T struct {
+                \tPackageLevel string
+                }
+
+                type Box[T any] struct {
+                \tValue T
+                }
+                """);
+
+        GoStructCopyResult result = expand(file, "Box");
+
+        assertTrue(result.message(), result.success());
+        assertFalse(result.content(), result.content().contains("PackageLevel"));
+    }
+
+    public void testDotImportsAreLeftToTheResolver() {
+        GoFile root = addFile("main.go", """
+                package fixture
+
+                import . "example.com/fixture/meta"
+
+                type Root struct {
+                \tMeta Meta
+                }
+                """);
+        addFile("meta/meta.go", "package meta\n\ntype Meta struct {\n\tVersion int\n}\n");
+
+        long resolves = resolveCalls();
+        GoStructCopyResult result = expand(root, "Root");
+
+        assertTrue(result.message(), result.success());
+        assertTrue(result.content(), result.content().contains("Version int"));
+        assertTrue(resolveCalls() > resolves);
+    }
+
+    public void testCachedResolutionsAreDroppedOnPsiChange() {
+        GoFile root = addFile("main.go", """
+                package fixture
+
+                import "example.com/fixture/model"
+
+                type Root struct {
+                \tFirst  model.Address
+                \tSecond model.Address
+                }
+                """);
+        GoFile address = addFile("model/address.go", "package model\n\ntype Address struct {\n\tStreet string\n}\n");
+
+        GoResolveCache cache = GoResolveCache.getInstance(getProject());
+        long hits = cache.getHitCount();
+        assertTrue(expand(root, "Root").content().contains("Street string"));
+        // The second model.Address of the same package is served from the cache
+        assertTrue(cache.getHitCount() > hits);
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            Document document = PsiDocumentManager.getInstance(getProject()).getDocument(address);
+            assertNotNull(document);
+            document.setText("package model\n\ntype Address struct {\n\tZip string\n}\n");
+            PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+        });
+
+        GoStructCopyResult result = expand(root, "Root");
+        assertTrue(result.content(), result.content().contains("Zip string"));
+        assertFalse(result.content(), result.content().contains("Street"));
+    }
+
+    private GoFile addFile(String path, String text) {
+        return (GoFile) myFixture.addFileToProject(path, text);
+    }
+
+    private GoStructCopyResult expand(GoFile file, String name) {
+        for (GoTypeSpec spec : PsiTreeUtil.findChildrenOfType(file, GoTypeSpec.class)) {
+            if (name.equals(spec.getName())) {
+                return GoStructCopyProcessor.forProject(getProject(), GoStructCopyOptions.DEFAULT).expand(spec);
+            }
+        }
+        throw new AssertionError("No " + name + " in " + file.getName());
+    }
+
+    private long resolveCalls() {
+        return GoStructStatistics.getInstance(getProject()).snapshot().resolveCalls();
+    }
+}
@@ -0,0 +1,183 @@
+package com.codex.gostructcopy.core;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.intellij.util.ThrowableRunnable;
+import com.loliwolf.gostructcopy.core.GoStructBatchExpander;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor.GoStructCopyResult;
+import com.loliwolf.gostructcopy.core.GoStructListing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Time, allocation and retained heap budgets for expansions on real Go PSI and the real resolver. Every run uses a
+ * fresh processor without the project caches, so the budgets cover resolving. The batch expander is checked here as
+ * well, since it needs real read actions. Run with {@code ./gradlew perfTest}.
+ */
+public class GoStructCopyPerformanceTest extends BasePlatformTestCase {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ATTEMPTS = 5;
+    private static final long MB = 1024 * 1024;
+    private static final long RETAINED_BUDGET_KB = 2048;
+
+    public void testDeepNesting() {
+        GoFile root = configure(GoFixtures.deepNesting(300));
+        GoTypeSpec spec = findRoot(root);
+
+        assertBudget("deep nesting", 301, 1500, 96, () -> newProcessor().expand(spec));
+    }
+
+    public void testFanOut() {
+        GoFile root = configure(GoFixtures.fanOut(1000));
+        GoTypeSpec spec = findRoot(root);
+
+        assertBudget("1k fan-out", 1001, 3000, 192, () -> newProcessor().expand(spec));
+    }
+
+    public void testNameClashes() {
+        GoFile root = configure(GoFixtures.nameClashes(40));
+        GoTypeSpec spec = findRoot(root);
+
+        assertBudget("cross-package name clashes", 121, 1500, 96, () -> newProcessor().expand(spec));
+    }
+
+    public void testAnonymousForest() {
+        GoFile root = configure(GoFixtures.anonymousForest(5, 3));
+        GoTypeSpec spec = findRoot(root);
+
+        assertBudget("anonymous struct forest", 364, 1500, 96, () -> newProcessor().expand(spec));
+    }
+
+    public void testExpandAtCaret() {
+        GoFile root = configure(GoFixtures.fanOut(1000));
+        int caretOffset = root.getText().indexOf("Root struct");
+
+        assertBudget("expandAtCaret on 1k fan-out", 1001, 3000, 192, () -> newProcessor().expandAtCaret(root, caretOffset));
+    }
+
+    public void testRetainedHeap() {
+        GoFile root = configure(GoFixtures.fanOut(1000));
+        GoTypeSpec spec = findRoot(root);
+        assertTrue(newProcessor().expand(spec).success());
+
+        // expand() drops its definitions once rendered; collectListing() runs the same collection and keeps them, so what
+        // it retains is what every expansion holds between its two passes, the part string interning shrinks
+        long before = usedHeapAfterGc();
+        GoStructListing listing = newProcessor().collectListing(spec);
+        long retained = usedHeapAfterGc() - before;
+
+        assertNotNull(listing);
+        assertEquals(1001, listing.getDefinitionCount());
+        assertTrue("1k fan-out retained " + retained / 1024 + " KB, budget " + RETAINED_BUDGET_KB + " KB",
+                retained <= RETAINED_BUDGET_KB * 1024);
+    }
+
+    public void testBatchExpansion() {
+        GoFile root = configure(GoFixtures.fanOut(1000));
+        GoTypeSpec spec = findRoot(root);
+        SmartPsiElementPointer<GoTypeSpec> pointer = SmartPointerManager.createPointer(spec);
+
+        // The expander takes its own non-blocking read actions, so it must run off the test's UI thread
+        ForkJoinPool pool = new ForkJoinPool(4);
+        GoStructCopyResult result;
+        try {
+            Future<GoStructCopyResult> batch = ApplicationManager.getApplication().executeOnPooledThread(
+                    () -> new GoStructBatchExpander(getProject(), GoStructCopyOptions.DEFAULT, pool,
+                            new EmptyProgressIndicator()).expand(List.of(pointer)));
+            result = PlatformTestUtil.waitForFuture(batch, 60_000);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(result.message(), result.success());
+        assertEquals(newProcessor().expandAll(List.of(spec)).content(), result.content());
+    }
+
+    private GoFile configure(Map<String, String> files) {
+        GoFile root = null;
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            PsiFile psiFile = myFixture.addFileToProject(file.getKey(), file.getValue());
+            if (GoFixtures.ROOT_FILE.equals(file.getKey())) {
+                root = (GoFile) psiFile;
+            }
+        }
+        assertNotNull(root);
+        return root;
+    }
+
+    private static GoTypeSpec findRoot(GoFile file) {
+        for (GoTypeSpec spec : file.getTypes()) {
+            if ("Root".equals(spec.getName())) {
+                return spec;
+            }
+        }
+        throw new AssertionError("No Root in " + file.getName());
+    }
+
+    private static GoStructCopyProcessor newProcessor() {
+        return new GoStructCopyProcessor(GoStructCopyOptions.DEFAULT);
+    }
+
+    /**
+     * Checks the output once, then the timing after warm-up, then the bytes allocated by one warm run.
+     */
+    private static void assertBudget(String scenario,
+                                     int expectedTypes,
+                                     int expectedMs,
+                                     long allocationBudgetMb,
+                                     Supplier<GoStructCopyResult> expansion) {
+        GoStructCopyResult result = expansion.get();
+        assertTrue(result.message(), result.success());
+        assertEquals(scenario, expectedTypes, countDefinitions(result.content()));
+
+        ThrowableRunnable<RuntimeException> run = () -> assertTrue(expansion.get().success());
+        PlatformTestUtil.startPerformanceTest(scenario, expectedMs, run)
+                .warmupIterations(WARMUP_ITERATIONS)
+                .attempts(ATTEMPTS)
+                .assertTiming();
+
+        long allocated = allocatedBytes(run);
+        assertTrue(scenario + " allocated " + allocated / MB + " MB, budget " + allocationBudgetMb + " MB",
+                allocated <= allocationBudgetMb * MB);
+    }
+
+    private static int countDefinitions(String content) {
+        int count = 0;
+        for (String line : content.split("\n")) {
+            if (line.startsWith("type ")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        // Twice, so that objects freed by finalization and reference processing in the first run are gone too
+        memory.gc();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long allocatedBytes(ThrowableRunnable<RuntimeException> run) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        run.run();
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+}
@@ -0,0 +1,167 @@
+package com.codex.gostructcopy.core;
+
+import com.goide.psi.GoFile;
+import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructExpansion;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incremental refreshes of a tracked expansion after real edits, compared with expanding again from scratch. Edits go
+ * through documents and reparsing, so they are checked here rather than with mocks. Run with
+ * {@code ./gradlew perfTest}.
+ */
+public class GoStructExpansionTest extends BasePlatformTestCase {
+    private final GoStructCopyProcessor processor = new GoStructCopyProcessor(GoStructCopyOptions.DEFAULT);
+
+    public void testRefreshRerendersOnlyTheEditedDefinition() {
+        GoFile file = addFile("""
+                package fixture
+
+                type Root struct {
+                \tHome    Address
+                \tBilling Billing
+                }
+
+                type Address struct {
+                \tStreet string
+                }
+
+                type Billing struct {
+                \tIBAN string
+                }
+                """);
+        GoStructExpansion previous = processor.expandTracked(findSpec(file, "Root"));
+        assertNotNull(previous);
+        int address = indexOf(previous, "Address");
+
+        replace(file, "\tStreet string\n", "\tStreet string\n\tZip    string\n");
+        GoStructExpansion refreshed = processor.refresh(previous, Set.of(address));
+
+        assertNotNull(refreshed);
+        assertFalse(refreshed.isRebuilt());
+        assertEquals(Set.of(address), refreshed.getChangedEntries());
+        assertEquals(expandAgain(file), refreshed.getText());
+    }
+
+    public void testRefreshKeepsTheExpansionWhenNothingChanged() {
+        GoFile file = addFile("""
+                package fixture
+
+                type Root struct {
+                \tHome Address
+                }
+
+                type Address struct {
+                \tStreet string
+                }
+                """);
+        GoStructExpansion previous = processor.expandTracked(findSpec(file, "Root"));
+        assertNotNull(previous);
+
+        assertSame(previous, processor.refresh(previous, Set.of()));
+    }
+
+    public void testRefreshExpandsAgainWhenAReferenceIsAdded() {
+        GoFile file = addFile("""
+                package fixture
+
+                type Root struct {
+                \tHome Address
+                }
+
+                type Address struct {
+                \tStreet string
+                }
+
+                type Geo struct {
+                \tLat float64
+                }
+                """);
+        GoStructExpansion previous = processor.expandTracked(findSpec(file, "Root"));
+        assertNotNull(previous);
+        int address = indexOf(previous, "Address");
+
+        replace(file, "\tStreet string\n", "\tStreet string\n\tGeo    Geo\n");
+        GoStructExpansion refreshed = processor.refresh(previous, Set.of(address));
+
+        assertNotNull(refreshed);
+        assertTrue(refreshed.isRebuilt());
+        assertEquals(expandAgain(file), refreshed.getText());
+    }
+
+    public void testRefreshExpandsAgainForStructsWithAnonymousFields() {
+        GoFile file = addFile("""
+                package fixture
+
+                type Root struct {
+                \tMeta struct {
+                \t\tVersion int
+                \t}
+                \tHome Address
+                }
+
+                type Address struct {
+                \tStreet string
+                }
+                """);
+        GoStructExpansion previous = processor.expandTracked(findSpec(file, "Root"));
+        assertNotNull(previous);
+
+        replace(file, "\t\tVersion int\n", "\t\tVersion int\n\t\tLabel   string\n");
+        GoStructExpansion refreshed = processor.refresh(previous,
+                previous.findAffectedEntries(List.of(findSpec(file, "Root"))));
+
+        assertNotNull(refreshed);
+        assertTrue(refreshed.isRebuilt());
+        assertEquals(expandAgain(file), refreshed.getText());
+    }
+
+    private GoFile addFile(String text) {
+        return (GoFile) myFixture.addFileToProject("main.go", text);
+    }
+
+    private void replace(GoFile file, String oldText, String newText) {
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+            Document document = documentManager.getDocument(file);
+            assertNotNull(document);
+            int offset = document.getText().indexOf(oldText);
+            assertTrue(oldText, offset >= 0);
+            document.replaceString(offset, offset + oldText.length(), newText);
+            documentManager.commitDocument(document);
+        });
+    }
+
+    private String expandAgain(GoFile file) {
+        GoStructExpansion fresh = processor.expandTracked(findSpec(file, "Root"));
+        assertNotNull(fresh);
+        return fresh.getText();
+    }
+
+    private static int indexOf(GoStructExpansion expansion, String name) {
+        List<GoStructExpansion.Entry> entries = expansion.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            if (name.equals(entries.get(i).name())) {
+                return i;
+            }
+        }
+        throw new AssertionError("No " + name + " in the expansion");
+    }
+
+    private static GoTypeSpec findSpec(GoFile file, String name) {
+        for (GoTypeSpec spec : file.getTypes()) {
+            if (name.equals(spec.getName())) {
+                return spec;
+            }
+        }
+        throw new AssertionError("No " + name + " in " + file.getName());
+    }
+}
@@ -0,0 +1,54 @@
+package com.codex.gostructcopy.core;
+
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import com.loliwolf.gostructcopy.core.GoPackageFilter;
+
+public class GoPackageFilterTest {
+
+    @Test
+    public void allowAll_acceptsEveryPackage() {
+        assertTrue(GoPackageFilter.ALLOW_ALL.accepts("github.com/example/svc/pkg/common"));
+        assertTrue(GoPackageFilter.ALLOW_ALL.isAllowAll());
+    }
+
+    @Test
+    public void exclude_matchesWildcardsAcrossSegments() {
+        GoPackageFilter filter = GoPackageFilter.compile(List.of(), List.of("*/pkg/common/*", "*pb"));
+
+        assertFalse(filter.accepts("github.com/example/svc/pkg/common/meta"));
+        assertFalse(filter.accepts("github.com/example/api/userpb"));
+        assertTrue(filter.accepts("github.com/example/svc/pkg/common"));
+        assertTrue(filter.accepts("github.com/example/svc/internal/model"));
+        assertTrue(filter.accepts("github.com/example/pbutil"));
+    }
+
+    @Test
+    public void include_limitsToMatchingPackagesMinusExcludes() {
+        GoPackageFilter filter = GoPackageFilter.compile(
+                List.of("github.com/example/*", "github.com/other/model"),
+                List.of("github.com/example/gen/*"));
+
+        assertTrue(filter.accepts("github.com/example/svc/model"));
+        assertTrue(filter.accepts("github.com/other/model"));
+        assertFalse(filter.accepts("github.com/other/model/sub"));
+        assertFalse(filter.accepts("github.com/example/gen/proto"));
+        assertFalse(filter.accepts("gopkg.in/yaml.v3"));
+    }
+
+    @Test
+    public void patterns_sharingPrefixesAreMatchedIndependently() {
+        GoPackageFilter filter = GoPackageFilter.compile(List.of(), List.of(" github.com/a/b ", "github.com/a/*/c", "", "github.com/a**x"));
+
+        assertFalse(filter.accepts("github.com/a/b"));
+        assertFalse(filter.accepts("github.com/a/long/path/c"));
+        assertFalse(filter.accepts("github.com/a/x"));
+        assertFalse(filter.accepts("github.com/ax"));
+        assertTrue(filter.accepts("github.com/a/bb"));
+        assertTrue(filter.accepts("github.com/a/c/d"));
+    }
+}
@@ -1,10 +1,13 @@
 package com.codex.gostructcopy.core;
 
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -15,17 +18,36 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.goide.psi.GoArrayOrSliceType;
 import com.goide.psi.GoFieldDeclaration;
 import com.goide.psi.GoFieldDefinition;
 import com.goide.psi.GoFile;
+import com.goide.psi.GoImportSpec;
 import com.goide.psi.GoSpecType;
 import com.goide.psi.GoStructType;
+import com.goide.psi.GoTag;
 import com.goide.psi.GoType;
+import com.goide.psi.GoTypeArguments;
+import com.goide.psi.GoTypeParamDefinition;
+import com.goide.psi.GoTypeParameterDeclaration;
+import com.goide.psi.GoTypeParameters;
 import com.goide.psi.GoTypeReferenceExpression;
 import com.goide.psi.GoTypeSpec;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.loliwolf.gostructcopy.core.GoClosureEstimate;
+import com.loliwolf.gostructcopy.core.GoPackageFilter;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
 import com.loliwolf.gostructcopy.core.GoStructCopyProcessor;
+import com.loliwolf.gostructcopy.core.GoStructDelta;
+import com.loliwolf.gostructcopy.core.GoStructFormat;
+import com.loliwolf.gostructcopy.core.GoStructListing;
+import com.loliwolf.gostructcopy.core.GoStructSelection;
 
 public class GoStructCopyProcessorTest {
 
@@ -47,7 +69,7 @@ public class GoStructCopyProcessorTest {
 
         String expected = """
                 type User struct {
-                \tName string
+                \tName    string
                 \tAddress Address
                 }
 
@@ -58,6 +80,93 @@ public class GoStructCopyProcessorTest {
         assertEquals(expected, result.content());
     }
 
+    @Test
+    public void collectListing_rendersTheExpandedTextInBatches() {
+        GoFile file = createGoFile("main", null, null);
+        GoTypeSpec addressSpec = createStructSpec("Address", file);
+        doReturn(createStructType("Street", "string")).when(addressSpec.getSpecType()).getType();
+        GoTypeSpec userSpec = createParentSpec("User", file, addressSpec, "Address", addressSpec.getName());
+
+        GoStructListing listing = processor.collectListing(userSpec);
+        assertNotNull(listing);
+        assertEquals(2, listing.getDefinitionCount());
+        java.util.List<String> chunks = new java.util.ArrayList<>();
+        listing.renderInBatches(1, chunks::add);
+
+        assertEquals(2, chunks.size());
+        assertEquals(processor.expand(userSpec).content(), String.join("", chunks));
+    }
+
+    @Test
+    public void expandAll_sharesDefinitionsBetweenRoots() {
+        GoFile file = createGoFile("main", null, null);
+
+        GoTypeSpec addressSpec = createStructSpec("Address", file);
+        GoStructType addressStruct = createStructType("Street", "string");
+        GoSpecType addressSpecType = addressSpec.getSpecType();
+        doReturn(addressStruct).when(addressSpecType).getType();
+
+        GoTypeSpec userSpec = createParentSpec("User", file, addressSpec, "Address", addressSpec.getName());
+        GoTypeSpec shopSpec = createParentSpec("Shop", file, addressSpec, "Location", addressSpec.getName());
+
+        GoStructCopyProcessor.GoStructCopyResult result = processor.expandAll(java.util.List.of(userSpec, shopSpec, addressSpec));
+        assertTrue(result.success());
+
+        String expected = """
+                type User struct {
+                \tName    string
+                \tAddress Address
+                }
+
+                type Shop struct {
+                \tName     string
+                \tLocation Address
+                }
+
+                type Address struct {
+                \tStreet string
+                }
+                """;
+        assertEquals(expected, result.content());
+    }
+
+    @Test
+    public void expandSelection_copiesOnlyCheckedFields() {
+        GoFile file = createGoFile("main", null, null);
+
+        GoTypeSpec addressSpec = createStructSpec("Address", file);
+        GoStructType addressStruct = createStructType("Street", "string");
+        GoSpecType addressSpecType = addressSpec.getSpecType();
+        doReturn(addressStruct).when(addressSpecType).getType();
+
+        GoTypeSpec userSpec = createParentSpec("User", file, addressSpec, "Address", addressSpec.getName());
+
+        // 只勾选 Address 字段，且未展开 Address 结构体
+        GoStructSelection selection = new GoStructSelection();
+        selection.select(userSpec, "Address");
+        GoStructCopyProcessor.GoStructCopyResult result = processor.expandSelection(userSpec, selection);
+        assertTrue(result.success());
+        assertEquals("""
+                type User struct {
+                \tAddress Address
+                }
+                """, result.content());
+
+        // 展开 Address 后其定义也会被复制
+        selection.select(addressSpec, "Street");
+        result = processor.expandSelection(userSpec, selection);
+        assertTrue(result.success());
+        assertEquals("""
+                type User struct {
+                \tAddress Address
+                }
+
+                type Address struct {
+                \tStreet string
+                }
+                """, result.content());
+    }
+
     @Test
     public void expandStruct_handlesRecursivePointer() {
         GoFile file = createGoFile("main", null, null);
@@ -93,7 +202,7 @@ public class GoStructCopyProcessorTest {
 
         String expected = """
                 type Object struct {
-                \tName string
+                \tName     string
                 \tModified time.Time
                 }
                 """;
@@ -118,7 +227,7 @@ public class GoStructCopyProcessorTest {
 
         String expected = """
                 type Flag struct {
-                \tName string
+                \tName           string
                 \tNormalizedName NormalizedName
                 }
 
@@ -145,7 +254,7 @@ public class GoStructCopyProcessorTest {
 
         String expected = """
                 type FlagSet struct {
-                \tUsage func()
+                \tUsage  func()
                 \tactual map[NormalizedName]*Flag
                 }
 
@@ -177,12 +286,12 @@ public class GoStructCopyProcessorTest {
 
         String expected = """
                 type Outer struct {
-                \tName string
+                \tName  string
                 \tInner Inner
                 }
 
                 type Inner struct {
-                \tID int
+                \tID   int
                 \tDeep Deep
                 }
 
@@ -193,6 +302,71 @@ public class GoStructCopyProcessorTest {
         assertEquals(expected, result.content());
     }
 
+    @Test
+    public void expandStruct_stopsAtMaxDepth() {
+        GoFile outerFile = createGoFile("outer", null, null);
+        GoFile innerFile = createGoFile("innerpkg", null, "github.com/example/innerpkg");
+        GoFile deepFile = createGoFile("deeppkg", null, "github.com/example/deeppkg");
+
+        GoTypeSpec deepSpec = createStructSpec("Deep", deepFile);
+        GoTypeSpec innerSpec = createStructSpec("Inner", innerFile);
+        GoStructType innerStruct = createStructTypeWithReference("ID", "int", "Deep", deepSpec, "deeppkg.Deep");
+        GoSpecType innerSpecType = innerSpec.getSpecType();
+        doReturn(innerStruct).when(innerSpecType).getType();
+
+        GoTypeSpec outerSpec = createParentSpec("Outer", outerFile, innerSpec, "Inner", "innerpkg.Inner");
+
+        GoStructCopyProcessor limited = new GoStructCopyProcessor(new GoStructCopyOptions(GoPackageFilter.ALLOW_ALL, 1));
+        GoStructCopyProcessor.GoStructCopyResult result = limited.expand(outerSpec);
+        assertTrue(result.success());
+
+        String expected = """
+                type Outer struct {
+                \tName  string
+                \tInner Inner
+                }
+
+                type Inner struct {
+                \tID   int
+                \tDeep deeppkg.Deep
+                }
+                """;
+        assertEquals(expected, result.content());
+    }
+
+    @Test
+    public void expandStruct_keepsReferencesIntoExcludedPackages() {
+        GoFile outerFile = createGoFile("outer", null, null);
+        GoFile innerFile = createGoFile("innerpkg", null, "github.com/example/innerpkg");
+        GoFile commonFile = createGoFile("common", null, "github.com/example/svc/pkg/common/meta");
+
+        GoTypeSpec metaSpec = createStructSpec("Meta", commonFile);
+        GoTypeSpec innerSpec = createStructSpec("Inner", innerFile);
+        GoStructType innerStruct = createStructTypeWithReference("ID", "int", "Meta", metaSpec, "meta.Meta");
+        GoSpecType innerSpecType = innerSpec.getSpecType();
+        doReturn(innerStruct).when(innerSpecType).getType();
+
+        GoTypeSpec outerSpec = createParentSpec("Outer", outerFile, innerSpec, "Inner", "innerpkg.Inner");
+
+        GoPackageFilter filter = GoPackageFilter.compile(java.util.List.of(), java.util.List.of("*/pkg/common/*"));
+        GoStructCopyProcessor filtered = new GoStructCopyProcessor(new GoStructCopyOptions(filter, 0));
+        GoStructCopyProcessor.GoStructCopyResult result = filtered.expand(outerSpec);
+        assertTrue(result.success());
+
+        String expected = """
+                type Outer struct {
+                \tName  string
+                \tInner Inner
+                }
+
+                type Inner struct {
+                \tID   int
+                \tMeta meta.Meta
+                }
+                """;
+        assertEquals(expected, result.content());
+    }
+
     @Test
     public void expandStruct_expandsSameNamedStructsFromDifferentPackages() {
         GoFile outerFile = createGoFile("outer", null, null);
@@ -216,13 +390,13 @@ public class GoStructCopyProcessorTest {
 
         String expected = """
                 type Outer struct {
-                \tName string
+                \tName   string
                 \tConfig Config
                 }
 
                 type Config struct {
                 \tEnabled bool
-                \tConfig DeeppkgConfig
+                \tConfig  DeeppkgConfig
                 }
 
                 type DeeppkgConfig struct {
@@ -256,7 +430,7 @@ public class GoStructCopyProcessorTest {
         String expected = """
                 type Main struct {
                 \tStringId Pkg1UserId
-                \tIntId Pkg2UserId
+                \tIntId    Pkg2UserId
                 }
 
                 type Pkg1UserId string
@@ -299,17 +473,17 @@ public class GoStructCopyProcessorTest {
 
         String expected = """
                 type Main struct {
-                \tName string
+                \tName   string
                 \tConfig Config
                 }
 
                 type Config struct {
-                \tValue1 string
+                \tValue1  string
                 \tConfig2 Pkg2Config
                 }
 
                 type Pkg2Config struct {
-                \tValue2 string
+                \tValue2  string
                 \tConfig3 Pkg3Config
                 }
 
@@ -563,7 +737,547 @@ public class GoStructCopyProcessorTest {
         assertTrue("Should contain LocalID field", content.contains("LocalID int"));
         assertTrue("Should contain ExternalID field", content.contains("ExternalID string"));
     }
-}
 
+    @Test
+    public void expandStruct_renamesOnlyTheReferenceToken() {
+        // 重命名引用时只替换引用本身，类型参数和包含同名子串的名称保持不变
+        GoFile currentFile = createGoFile("main", null, null);
+        GoFile importedFile = createGoFile("external", null, "github.com/example/external");
+
+        GoTypeSpec currentUserSpec = createStructSpec("User", currentFile);
+        GoTypeSpec importedUserSpec = createStructSpec("User", importedFile);
+
+        GoTypeSpec mainSpec = createStructSpec("Main", currentFile);
+        GoStructType mainStruct = createStructTypeWithTwoReferences(
+            "Owner", currentUserSpec, "User",
+            "Members", importedUserSpec, "external.User[external.UserID]"
+        );
+        GoFieldDeclaration membersDeclaration = mainStruct.getFieldDeclarationList().get(1);
+        when(membersDeclaration.getType().getTypeReferenceExpression().getText()).thenReturn("external.User");
+        GoSpecType mainSpecType = mainSpec.getSpecType();
+        doReturn(mainStruct).when(mainSpecType).getType();
+
+        GoStructCopyProcessor.GoStructCopyResult result = processor.expand(mainSpec);
+        assertTrue(result.success());
+        assertTrue(result.content(), result.content().contains("\tMembers ExternalUser[external.UserID]\n"));
+        assertTrue(result.content(), result.content().contains("\tOwner   User\n"));
+    }
+
+    @Test
+    public void expandStruct_instantiatesGenericStructsOnce() {
+        // Page[User] 展开为具体的 PageUser，重复使用时共用同一个定义
+        GoFile file = createGoFile("main", null, null);
 
+        GoTypeSpec userSpec = createStructSpec("User", file);
+        GoStructType userStruct = createStructType("ID", "string");
+        doReturn(userStruct).when(userSpec.getSpecType()).getType();
 
+        GoTypeSpec pageSpec = createStructSpec("Page", file);
+        GoTypeParameters parameters = createTypeParameters("T");
+        when(pageSpec.getTypeParameters()).thenReturn(parameters);
+        GoArrayOrSliceType itemsType = mock(GoArrayOrSliceType.class);
+        GoType parameterType = createParameterReference("T");
+        when(itemsType.getType()).thenReturn(parameterType);
+        GoStructType pageStruct = mock(GoStructType.class);
+        when(pageStruct.getFieldDeclarationList()).thenReturn(Collections.singletonList(createTypedField("Items", itemsType)));
+        doReturn(pageStruct).when(pageSpec.getSpecType()).getType();
+
+        GoTypeSpec mainSpec = createStructSpec("Main", file);
+        GoStructType mainStruct = mock(GoStructType.class);
+        when(mainStruct.getFieldDeclarationList()).thenReturn(java.util.List.of(
+                createTypedField("Users", createInstantiation(pageSpec, "Page[User]", userSpec, "User")),
+                createTypedField("Admins", createInstantiation(pageSpec, "Page[User]", userSpec, "User"))));
+        doReturn(mainStruct).when(mainSpec.getSpecType()).getType();
+
+        GoStructCopyProcessor.GoStructCopyResult result = processor.expand(mainSpec);
+        assertTrue(result.success());
+        assertEquals("""
+                type Main struct {
+                \tUsers  PageUser
+                \tAdmins PageUser
+                }
+
+                type PageUser struct {
+                \tItems []User
+                }
+
+                type User struct {
+                \tID string
+                }
+                """, result.content());
+    }
+
+    @Test
+    public void estimateClosure_stopsCountingAtTheLimit() {
+        GoFile file = createGoFile("main", null, null);
+        GoTypeSpec leafSpec = createStructSpec("Leaf", file);
+        GoTypeSpec middleSpec = createParentSpec("Middle", file, leafSpec, "Leaf", "Leaf");
+        GoTypeSpec rootSpec = createParentSpec("Root", file, middleSpec, "Middle", "Middle");
+
+        GoClosureEstimate estimate = processor.estimateClosure(rootSpec, 10);
+        assertEquals(3, estimate.typeCount());
+        assertFalse(estimate.truncated());
+
+        // Root 和 Middle 在限制之内，Leaf 超出，因此建议深度为 1
+        estimate = processor.estimateClosure(rootSpec, 2);
+        assertTrue(estimate.truncated());
+        assertEquals(1, estimate.maxDepthWithinLimit());
+
+        // 根结构体直接引用的类型已经超出限制：没有可用的深度
+        estimate = processor.estimateClosure(rootSpec, 1);
+        assertTrue(estimate.truncated());
+        assertEquals(0, estimate.maxDepthWithinLimit());
+    }
+
+    @Test
+    public void expandStruct_alignsFieldsLikeGofmt() {
+        // 与 gofmt 相同：没有后续单元格的行（无标签的嵌入字段）会打断对齐，标签列只在连续带标签的行之间对齐
+        GoFile file = createGoFile("main", null, null);
+        GoFieldDeclaration id = withTag(createFieldDeclaration("ID", "int"), "`json:\"id\"`");
+        GoFieldDeclaration name = withTag(createFieldDeclaration("Name", "string"), "`json:\"name\"`");
+        GoFieldDeclaration base = createFieldDeclaration("Base", "Base");
+        when(base.getFieldDefinitionList()).thenReturn(Collections.emptyList());
+        GoFieldDeclaration extra = createFieldDeclaration("Extra", "map[string]int");
+        GoFieldDeclaration created = withTag(createFieldDeclaration("Created", "time.Time"), "`json:\"created\"`");
+        GoStructType recordStruct = mock(GoStructType.class);
+        when(recordStruct.getFieldDeclarationList()).thenReturn(java.util.List.of(id, name, base, extra, created));
+        GoTypeSpec recordSpec = createStructSpec("Record", file);
+        doReturn(recordStruct).when(recordSpec.getSpecType()).getType();
+
+        GoStructCopyProcessor.GoStructCopyResult result = processor.expand(recordSpec);
+        assertTrue(result.success());
+        assertEquals("""
+                type Record struct {
+                \tID   int    `json:"id"`
+                \tName string `json:"name"`
+                \tBase
+                \tExtra   map[string]int
+                \tCreated time.Time `json:"created"`
+                }
+                """, result.content());
+    }
+
+    @Test
+    public void expandChanged_listsOnlyDefinitionsChangedSinceTheSnapshot() {
+        GoFile file = createGoFile("main", null, null);
+        GoTypeSpec addressSpec = createStructSpec("Address", file);
+        GoSpecType addressSpecType = addressSpec.getSpecType();
+        doReturn(createStructType("Street", "string")).when(addressSpecType).getType();
+        GoTypeSpec userSpec = createParentSpec("User", file, addressSpec, "Address", addressSpec.getName());
+
+        GoStructDelta first = processor.expandChanged(userSpec, Map.of());
+        assertNotNull(first);
+        assertEquals(2, first.changedCount());
+        assertEquals(processor.expand(userSpec).content(), first.content());
+
+        GoStructDelta unchanged = processor.expandChanged(userSpec, first.hashes());
+        assertNotNull(unchanged);
+        assertEquals(0, unchanged.changedCount());
+        assertEquals("", unchanged.content());
+
+        // 只有 Address 的内容发生变化，引用它的 User 文本不变
+        doReturn(createStructType("City", "string")).when(addressSpecType).getType();
+        GoStructDelta changed = processor.expandChanged(userSpec, first.hashes());
+        assertNotNull(changed);
+        assertEquals(1, changed.changedCount());
+        assertEquals("""
+                type Address struct {
+                \tCity string
+                }
+                """, changed.content());
+        assertTrue(changed.removed().isEmpty());
+    }
+
+    @Test
+    public void expandFormats_rendersJsonShapesFromTheSameDefinitions() {
+        GoFile file = createGoFile("main", null, null);
+        GoTypeSpec addressSpec = createStructSpec("Address", file);
+        GoStructType addressStruct = createStructType("Street", "string");
+        doReturn(addressStruct).when(addressSpec.getSpecType()).getType();
+
+        GoTypeSpec userSpec = createStructSpec("User", file);
+        GoFieldDeclaration name = withTag(createFieldDeclaration("Name", "string"), "`json:\"name,omitempty\" db:\"name\"`");
+        GoFieldDeclaration tags = createFieldDeclaration("Tags", "[]string");
+        GoFieldDeclaration address = createReferenceField("Address", addressSpec, "Address");
+        // 未导出字段不会出现在 JSON 中
+        GoFieldDeclaration secret = createFieldDeclaration("secret", "string");
+        GoStructType userStruct = mock(GoStructType.class);
+        when(userStruct.getFieldDeclarationList()).thenReturn(java.util.List.of(name, tags, address, secret));
+        doReturn(userStruct).when(userSpec.getSpecType()).getType();
+
+        Map<GoStructFormat, String> listings = processor.expandFormats(userSpec, EnumSet.allOf(GoStructFormat.class));
+
+        assertEquals("""
+                type User struct {
+                \tName    string `json:"name,omitempty"`
+                \tTags    []string
+                \tAddress Address
+                \tsecret  string
+                }
+
+                type Address struct {
+                \tStreet string
+                }
+                """, listings.get(GoStructFormat.GO));
+        assertEquals("""
+                export interface User {
+                  name?: string;
+                  Tags: string[];
+                  Address: Address;
+                }
+
+                export interface Address {
+                  Street: string;
+                }
+                """, listings.get(GoStructFormat.TYPESCRIPT));
+        assertEquals("""
+                {
+                  "$schema": "https://json-schema.org/draft/2020-12/schema",
+                  "$ref": "#/$defs/User",
+                  "$defs": {
+                    "User": {
+                      "type": "object",
+                      "properties": {
+                        "name": {"type": "string"},
+                        "Tags": {"type": "array", "items": {"type": "string"}},
+                        "Address": {"$ref": "#/$defs/Address"}
+                      },
+                      "required": ["Tags", "Address"]
+                    },
+                    "Address": {
+                      "type": "object",
+                      "properties": {
+                        "Street": {"type": "string"}
+                      },
+                      "required": ["Street"]
+                    }
+                  }
+                }
+                """, listings.get(GoStructFormat.JSON_SCHEMA));
+    }
+
+    @Test
+    public void expandFormats_refersToANonStructRootInTheJsonSchema() {
+        // 根类型 type IDs []Item 不是结构体，排在 Item 之后，但 $ref 仍然指向 IDs
+        GoFile file = createGoFile("main", null, null);
+        GoTypeSpec itemSpec = createStructSpec("Item", file);
+        doReturn(createStructType("ID", "string")).when(itemSpec.getSpecType()).getType();
+
+        GoTypeSpec idsSpec = createStructSpec("IDs", file);
+        GoArrayOrSliceType idsType = mock(GoArrayOrSliceType.class);
+        GoType itemType = mock(GoType.class);
+        GoTypeReferenceExpression itemReference = mock(GoTypeReferenceExpression.class);
+        when(itemReference.resolve()).thenReturn(itemSpec);
+        when(itemType.getTypeReferenceExpression()).thenReturn(itemReference);
+        when(itemType.getText()).thenReturn("Item");
+        when(idsType.getType()).thenReturn(itemType);
+        when(idsType.getText()).thenReturn("[]Item");
+        doReturn(idsType).when(idsSpec.getSpecType()).getType();
+
+        Map<GoStructFormat, String> listings = processor.expandFormats(idsSpec, EnumSet.of(GoStructFormat.JSON_SCHEMA));
+
+        assertEquals("""
+                {
+                  "$schema": "https://json-schema.org/draft/2020-12/schema",
+                  "$ref": "#/$defs/IDs",
+                  "$defs": {
+                    "Item": {
+                      "type": "object",
+                      "properties": {
+                        "ID": {"type": "string"}
+                      },
+                      "required": ["ID"]
+                    },
+                    "IDs": {"type": "array", "items": {"$ref": "#/$defs/Item"}}
+                  }
+                }
+                """, listings.get(GoStructFormat.JSON_SCHEMA));
+    }
+
+    @Test
+    public void expandStruct_resolvesNamedStructTypesWhileIndexing() {
+        // 索引期间：Owner 的类型 Person 定义为 type Person User，只能从包内已解析的文件中查找，不能调用依赖索引的 API
+        VirtualFile directory = mock(VirtualFile.class);
+        VirtualFile source = createSourceFile(directory, "models.go");
+        when(directory.getPath()).thenReturn("/src/app");
+        when(directory.getChildren()).thenReturn(new VirtualFile[]{source});
+        GoFile file = createGoFile("main", source, null);
+        when(file.getName()).thenReturn("models.go");
+
+        GoTypeSpec userSpec = createStructSpec("User", file);
+        doReturn(createStructType("ID", "string")).when(userSpec.getSpecType()).getType();
+        GoTypeSpec personSpec = createStructSpec("Person", file);
+        GoType personType = createIndexedType("User", file);
+        when(personType.getUnderlyingType(any())).thenThrow(IndexNotReadyException.create());
+        doReturn(personType).when(personSpec.getSpecType()).getType();
+        GoTypeSpec mainSpec = createStructSpec("Main", file);
+        GoStructType mainStruct = mock(GoStructType.class);
+        when(mainStruct.getFieldDeclarationList()).thenReturn(
+                Collections.singletonList(createTypedField("Owner", createIndexedType("Person", file))));
+        doReturn(mainStruct).when(mainSpec.getSpecType()).getType();
+        when(file.getTypes()).thenReturn(java.util.List.of(mainSpec, personSpec, userSpec));
+
+        GoStructCopyProcessor indexing = GoStructCopyProcessor.forProject(createIndexingProject(source, file), GoStructCopyOptions.DEFAULT);
+        assertTrue(indexing.resolvesSyntactically());
+        GoStructCopyProcessor.GoStructCopyResult result = indexing.expand(mainSpec);
+
+        assertTrue(result.message(), result.success());
+        assertEquals("""
+                type Main struct {
+                \tOwner Person
+                }
+
+                type Person struct {
+                \tID string
+                }
+                """, result.content());
+    }
+
+    @Test
+    public void forSmartMode_neverResolvesSyntactically() {
+        // 在索引期间创建、索引结束后才运行的处理器（inSmartMode）必须使用 IDE 解析，否则结果不完整且不写入结果缓存
+        VirtualFile directory = mock(VirtualFile.class);
+        VirtualFile source = createSourceFile(directory, "models.go");
+        when(directory.getChildren()).thenReturn(new VirtualFile[]{source});
+        Project indexingProject = createIndexingProject(source, createGoFile("main", source, null));
+
+        assertTrue(GoStructCopyProcessor.forProject(indexingProject, GoStructCopyOptions.DEFAULT).resolvesSyntactically());
+        assertFalse(GoStructCopyProcessor.forSmartMode(indexingProject, GoStructCopyOptions.DEFAULT).resolvesSyntactically());
+    }
+
+    @Test
+    public void expandStruct_findsImportedPackagesFromGoModWhileIndexing() throws Exception {
+        // 索引期间：通过 go.mod 的模块路径找到模块内的包，其他模块的包只在 vendor 目录中查找；模块路径可以带引号和注释
+        for (String goModText : java.util.List.of(
+                "module example.com/app\n\ngo 1.21\n",
+                "// app\nmodule \"example.com/app\" // 带引号\n\ngo 1.21\n")) {
+            VirtualFile root = mock(VirtualFile.class);
+            VirtualFile goMod = mock(VirtualFile.class);
+            when(goMod.contentsToByteArray()).thenReturn(goModText.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            when(root.findChild("go.mod")).thenReturn(goMod);
+            when(root.getPath()).thenReturn("/src/app");
+            VirtualFile mainSource = createSourceFile(root, "main.go");
+            when(root.getChildren()).thenReturn(new VirtualFile[]{goMod, mainSource});
+
+            VirtualFile modelsDirectory = createPackageDirectory(root, "models", "/src/app/models");
+            VirtualFile modelsSource = createSourceFile(modelsDirectory, "profile.go");
+            when(modelsDirectory.getChildren()).thenReturn(new VirtualFile[]{modelsSource});
+            VirtualFile moneyDirectory = createPackageDirectory(root, "vendor/github.com/acme/money",
+                    "/src/app/vendor/github.com/acme/money");
+            VirtualFile moneySource = createSourceFile(moneyDirectory, "money.go");
+            when(moneyDirectory.getChildren()).thenReturn(new VirtualFile[]{moneySource});
+
+            GoFile mainFile = createGoFile("main", mainSource, null);
+            GoImportSpec modelsImport = createImport("example.com/app/models");
+            GoImportSpec moneyImport = createImport("github.com/acme/money");
+            when(mainFile.getImports()).thenReturn(java.util.List.of(modelsImport, moneyImport));
+            GoFile modelsFile = createGoFile("models", modelsSource, "example.com/app/models");
+            GoFile moneyFile = createGoFile("money", moneySource, "github.com/acme/money");
+
+            GoTypeSpec profileSpec = createStructSpec("Profile", modelsFile);
+            doReturn(createStructType("Bio", "string")).when(profileSpec.getSpecType()).getType();
+            when(modelsFile.getTypes()).thenReturn(java.util.List.of(profileSpec));
+            GoTypeSpec priceSpec = createStructSpec("Price", moneyFile);
+            doReturn(createStructType("Cents", "int64")).when(priceSpec.getSpecType()).getType();
+            when(moneyFile.getTypes()).thenReturn(java.util.List.of(priceSpec));
+
+            GoTypeSpec mainSpec = createStructSpec("Main", mainFile);
+            GoStructType mainStruct = mock(GoStructType.class);
+            when(mainStruct.getFieldDeclarationList()).thenReturn(java.util.List.of(
+                    createTypedField("Profile", createIndexedType("models", "Profile", mainFile)),
+                    createTypedField("Price", createIndexedType("money", "Price", mainFile))));
+            doReturn(mainStruct).when(mainSpec.getSpecType()).getType();
+            when(mainFile.getTypes()).thenReturn(java.util.List.of(mainSpec));
+
+            GoStructCopyProcessor indexing = GoStructCopyProcessor.forProject(createIndexingProject(
+                    mainSource, mainFile, modelsSource, modelsFile, moneySource, moneyFile), GoStructCopyOptions.DEFAULT);
+            GoStructCopyProcessor.GoStructCopyResult result = indexing.expand(mainSpec);
+
+            assertTrue(result.message(), result.success());
+            assertEquals(" (resolved without indexes)", indexing.getIndexingNote());
+            assertEquals(goModText, """
+                    type Main struct {
+                    \tProfile Profile
+                    \tPrice   Price
+                    }
+
+                    type Profile struct {
+                    \tBio string
+                    }
+
+                    type Price struct {
+                    \tCents int64
+                    }
+                    """, result.content());
+        }
+    }
+
+    @Test
+    public void expandStruct_listsReferencesKeptAsWrittenWhileIndexing() throws Exception {
+        // 索引期间：其他模块中未 vendor 的包和包内找不到的类型保持原样，并在通知中列出；标准库和内置类型不列出
+        VirtualFile root = mock(VirtualFile.class);
+        VirtualFile goMod = mock(VirtualFile.class);
+        when(goMod.contentsToByteArray()).thenReturn("module example.com/app\n".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        when(root.findChild("go.mod")).thenReturn(goMod);
+        when(root.getPath()).thenReturn("/src/app");
+        VirtualFile mainSource = createSourceFile(root, "main.go");
+        when(root.getChildren()).thenReturn(new VirtualFile[]{goMod, mainSource});
+
+        GoFile mainFile = createGoFile("main", mainSource, null);
+        when(mainFile.getName()).thenReturn("main.go");
+        GoImportSpec libImport = createImport("github.com/other/lib");
+        GoImportSpec timeImport = createImport("time");
+        when(mainFile.getImports()).thenReturn(java.util.List.of(libImport, timeImport));
+
+        java.util.List<GoFieldDeclaration> fields = new java.util.ArrayList<>();
+        fields.add(createTypedField("Missing", createIndexedType("Missing", mainFile)));
+        fields.add(createTypedField("Created", createIndexedType("time", "Time", mainFile)));
+        fields.add(createTypedField("Name", createIndexedType("string", mainFile)));
+        for (String name : java.util.List.of("A", "B", "C", "D", "E", "F")) {
+            fields.add(createTypedField(name, createIndexedType("lib", name, mainFile)));
+        }
+        GoTypeSpec mainSpec = createStructSpec("Main", mainFile);
+        GoStructType mainStruct = mock(GoStructType.class);
+        when(mainStruct.getFieldDeclarationList()).thenReturn(fields);
+        doReturn(mainStruct).when(mainSpec.getSpecType()).getType();
+        when(mainFile.getTypes()).thenReturn(java.util.List.of(mainSpec));
+
+        GoStructCopyProcessor indexing = GoStructCopyProcessor.forProject(createIndexingProject(mainSource, mainFile),
+                GoStructCopyOptions.DEFAULT);
+        GoStructCopyProcessor.GoStructCopyResult result = indexing.expand(mainSpec);
+
+        assertTrue(result.message(), result.success());
+        assertTrue(result.content(), result.content().contains("\tA       lib.A\n"));
+        assertEquals(" (indexing in progress; kept as written: Missing, lib.A, lib.B, lib.C, lib.D and 2 more)",
+                indexing.getIndexingNote());
+        assertTrue(result.message(), result.message().endsWith(indexing.getIndexingNote()));
+    }
+
+    private VirtualFile createPackageDirectory(@NotNull VirtualFile root, @NotNull String relativePath, @NotNull String path) {
+        VirtualFile directory = mock(VirtualFile.class);
+        when(directory.isDirectory()).thenReturn(true);
+        when(directory.getPath()).thenReturn(path);
+        when(root.findFileByRelativePath(relativePath)).thenReturn(directory);
+        return directory;
+    }
+
+    private GoImportSpec createImport(@NotNull String path) {
+        GoImportSpec importSpec = mock(GoImportSpec.class);
+        when(importSpec.getPath()).thenReturn(path);
+        return importSpec;
+    }
+
+    private VirtualFile createSourceFile(@NotNull VirtualFile directory, @NotNull String name) {
+        VirtualFile file = mock(VirtualFile.class);
+        when(file.getName()).thenReturn(name);
+        when(file.getExtension()).thenReturn("go");
+        when(file.getParent()).thenReturn(directory);
+        when(file.isValid()).thenReturn(true);
+        return file;
+    }
+
+    /**
+     * A project that is indexing, whose PSI manager maps {@code sources} to {@code files} in pairs.
+     */
+    private Project createIndexingProject(@NotNull Object... sourcesAndFiles) {
+        DumbService dumbService = mock(DumbService.class);
+        when(dumbService.isDumb()).thenReturn(true);
+        PsiManager psiManager = mock(PsiManager.class);
+        for (int i = 0; i < sourcesAndFiles.length; i += 2) {
+            when(psiManager.findFile((VirtualFile) sourcesAndFiles[i])).thenReturn((PsiFile) sourcesAndFiles[i + 1]);
+        }
+        Project project = mock(Project.class);
+        when(project.getService(DumbService.class)).thenReturn(dumbService);
+        when(project.getService(PsiManager.class)).thenReturn(psiManager);
+        return project;
+    }
+
+    /**
+     * A reference to {@code name} that only resolves through the indexes, which are not ready.
+     */
+    private GoType createIndexedType(@NotNull String name, @NotNull GoFile file) {
+        return createIndexedType(null, name, file);
+    }
+
+    /**
+     * A reference to {@code name}, qualified by the package {@code qualifier} unless it is {@code null}, that only
+     * resolves through the indexes, which are not ready.
+     */
+    private GoType createIndexedType(@Nullable String qualifier, @NotNull String name, @NotNull GoFile file) {
+        String text = qualifier != null ? qualifier + "." + name : name;
+        GoTypeReferenceExpression reference = mock(GoTypeReferenceExpression.class);
+        PsiElement identifier = mock(PsiElement.class);
+        when(identifier.getText()).thenReturn(name);
+        when(reference.getIdentifier()).thenReturn(identifier);
+        when(reference.getText()).thenReturn(text);
+        when(reference.getContainingFile()).thenReturn(file);
+        when(reference.resolve()).thenThrow(IndexNotReadyException.create());
+        if (qualifier != null) {
+            GoTypeReferenceExpression qualifierReference = mock(GoTypeReferenceExpression.class);
+            when(qualifierReference.getText()).thenReturn(qualifier);
+            when(reference.getQualifier()).thenReturn(qualifierReference);
+        }
+        GoType type = mock(GoType.class);
+        when(type.getTypeReferenceExpression()).thenReturn(reference);
+        when(type.getText()).thenReturn(text);
+        return type;
+    }
+
+    private GoTypeParameters createTypeParameters(@NotNull String name) {
+        GoTypeParamDefinition definition = mock(GoTypeParamDefinition.class);
+        when(definition.getName()).thenReturn(name);
+        GoTypeParameterDeclaration declaration = mock(GoTypeParameterDeclaration.class);
+        when(declaration.getTypeParamDefinitionList()).thenReturn(Collections.singletonList(definition));
+        GoTypeParameters parameters = mock(GoTypeParameters.class);
+        when(parameters.getTypeParameterDeclarationList()).thenReturn(Collections.singletonList(declaration));
+        return parameters;
+    }
+
+    private GoType createParameterReference(@NotNull String name) {
+        GoType type = mock(GoType.class);
+        GoTypeReferenceExpression reference = mock(GoTypeReferenceExpression.class);
+        PsiElement identifier = mock(PsiElement.class);
+        when(identifier.getText()).thenReturn(name);
+        when(reference.getIdentifier()).thenReturn(identifier);
+        when(type.getTypeReferenceExpression()).thenReturn(reference);
+        when(type.getText()).thenReturn(name);
+        return type;
+    }
+
+    private GoType createInstantiation(@NotNull GoTypeSpec genericSpec, @NotNull String text, @NotNull GoTypeSpec argumentSpec, @NotNull String argumentText) {
+        GoType argument = mock(GoType.class);
+        GoTypeReferenceExpression argumentReference = mock(GoTypeReferenceExpression.class);
+        when(argumentReference.resolve()).thenReturn(argumentSpec);
+        when(argument.getTypeReferenceExpression()).thenReturn(argumentReference);
+        when(argument.getText()).thenReturn(argumentText);
+
+        GoType type = mock(GoType.class);
+        GoTypeReferenceExpression reference = mock(GoTypeReferenceExpression.class);
+        when(reference.resolve()).thenReturn(genericSpec);
+        GoTypeArguments arguments = mock(GoTypeArguments.class);
+        when(arguments.getTypeList()).thenReturn(Collections.singletonList(argument));
+        when(type.getTypeReferenceExpression()).thenReturn(reference);
+        when(type.getTypeArguments()).thenReturn(arguments);
+        when(type.getText()).thenReturn(text);
+        return type;
+    }
+
+    private GoFieldDeclaration withTag(@NotNull GoFieldDeclaration declaration, @NotNull String tagText) {
+        GoTag tag = mock(GoTag.class);
+        when(tag.getText()).thenReturn(tagText);
+        when(declaration.getTag()).thenReturn(tag);
+        return declaration;
+    }
+
+    private GoFieldDeclaration createTypedField(@NotNull String name, @NotNull GoType type) {
+        GoFieldDeclaration declaration = mock(GoFieldDeclaration.class);
+        GoFieldDefinition definition = mock(GoFieldDefinition.class);
+        PsiElement identifier = mock(PsiElement.class);
+        when(identifier.getText()).thenReturn(name);
+        when(definition.getIdentifier()).thenReturn(identifier);
+        when(declaration.getFieldDefinitionList()).thenReturn(Collections.singletonList(definition));
+        when(declaration.getType()).thenReturn(type);
+        when(declaration.getTag()).thenReturn(null);
+        return declaration;
+    }
+}
@@ -0,0 +1,78 @@
+package com.codex.gostructcopy.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.loliwolf.gostructcopy.core.GoStructCopyOptions;
+import com.loliwolf.gostructcopy.core.GoStructReverseIndex.Container;
+import com.loliwolf.gostructcopy.core.GoStructReverseIndex.Index;
+import com.loliwolf.gostructcopy.core.GoStructReverseIndex.TypeKey;
+
+public class GoStructReverseIndexTest {
+    private final VirtualFile file = mock(VirtualFile.class);
+    private int nextOffset;
+
+    @Test
+    public void containersOf_listsRootsFirstThenNearest() {
+        TypeKey money = key();
+        TypeKey price = key();
+        TypeKey order = key();
+        TypeKey invoice = key();
+        // Order -> Price -> Money, Invoice -> Money, and Order is also referenced by Invoice
+        Index index = new Index(GoStructCopyOptions.DEFAULT, 0, Map.of(
+                money, List.of(price, invoice),
+                price, List.of(order),
+                order, List.of(invoice)));
+
+        List<Container> containers = index.containersOf(money);
+
+        assertEquals(3, containers.size());
+        assertEquals(invoice, containers.get(0).key());
+        assertTrue(containers.get(0).root());
+        assertEquals(1, containers.get(0).distance());
+        assertEquals(price, containers.get(1).key());
+        assertEquals(order, containers.get(2).key());
+        assertEquals(2, containers.get(2).distance());
+    }
+
+    @Test
+    public void containersOf_stopsAtTheMaximumDepth() {
+        TypeKey leaf = key();
+        TypeKey middle = key();
+        TypeKey top = key();
+        Index index = new Index(GoStructCopyOptions.DEFAULT.withMaxDepth(1), 0, Map.of(
+                leaf, List.of(middle),
+                middle, List.of(top)));
+
+        List<Container> containers = index.containersOf(leaf);
+
+        assertEquals(1, containers.size());
+        assertEquals(middle, containers.get(0).key());
+    }
+
+    @Test
+    public void containersOf_terminatesOnCycles() {
+        TypeKey node = key();
+        TypeKey edge = key();
+        Index index = new Index(GoStructCopyOptions.DEFAULT, 0, Map.of(
+                node, List.of(edge, node),
+                edge, List.of(node)));
+
+        List<Container> containers = index.containersOf(node);
+
+        assertEquals(1, containers.size());
+        assertEquals(edge, containers.get(0).key());
+    }
+
+    private TypeKey key() {
+        // 每个类型在同一文件中的偏移量各不相同
+        return new TypeKey(file, nextOffset++);
+    }
+}
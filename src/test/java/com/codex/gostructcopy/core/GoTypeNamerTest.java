@@ -0,0 +1,87 @@
+package com.codex.gostructcopy.core;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import com.loliwolf.gostructcopy.core.GoTypeNamer;
+import com.loliwolf.gostructcopy.core.InMemoryTypeSource;
+import com.loliwolf.gostructcopy.core.InMemoryTypeSource.Spec;
+
+public class GoTypeNamerTest {
+
+    @Test
+    public void assign_keepsDistinctNames() {
+        GoTypeNamer<Spec> namer = new GoTypeNamer<>(InMemoryTypeSource.INSTANCE, 0);
+        int user = namer.add(Spec.struct("User", "example.com/app/model"));
+        int profile = namer.add(Spec.struct("Profile", "example.com/app/model"));
+
+        assertEquals(0, namer.assign());
+        assertEquals("User", namer.name(user));
+        assertEquals("Profile", namer.name(profile));
+    }
+
+    @Test
+    public void assign_keepsTheNameForTheFirstStructDiscovered() {
+        GoTypeNamer<Spec> namer = new GoTypeNamer<>(InMemoryTypeSource.INSTANCE, 0);
+        int order = namer.add(Spec.struct("Item", "example.com/app/order"));
+        int cart = namer.add(Spec.struct("Item", "example.com/app/cart"));
+        int wish = namer.add(Spec.struct("Item", "example.com/app/wish"));
+
+        assertEquals(1, namer.assign());
+        assertEquals("Item", namer.name(order));
+        assertEquals("CartItem", namer.name(cart));
+        assertEquals("WishItem", namer.name(wish));
+    }
+
+    @Test
+    public void assign_prefixesEveryNamedNonStructType() {
+        GoTypeNamer<Spec> namer = new GoTypeNamer<>(InMemoryTypeSource.INSTANCE, 0);
+        int order = namer.add(Spec.alias("Status", "example.com/app/order"));
+        int payment = namer.add(Spec.alias("Status", "example.com/app/payment"));
+
+        namer.assign();
+
+        assertEquals("OrderStatus", namer.name(order));
+        assertEquals("PaymentStatus", namer.name(payment));
+    }
+
+    @Test
+    public void assign_givesDeclaredTypesPrecedenceOverSynthesizedNames() {
+        GoTypeNamer<Spec> namer = new GoTypeNamer<>(InMemoryTypeSource.INSTANCE, 0);
+        int anonymous = namer.add("Config", null);
+        int declared = namer.add(Spec.struct("Config", "example.com/app/model"));
+        int otherAnonymous = namer.add("Config", null);
+
+        namer.assign();
+
+        assertEquals("Config", namer.name(declared));
+        assertEquals("Config2", namer.name(anonymous));
+        assertEquals("Config3", namer.name(otherAnonymous));
+    }
+
+    @Test
+    public void assign_skipsSuffixedNamesThatAreTaken() {
+        GoTypeNamer<Spec> namer = new GoTypeNamer<>(InMemoryTypeSource.INSTANCE, 0);
+        int anonymous = namer.add("Node", null);
+        int node = namer.add(Spec.struct("Node", "example.com/app/tree"));
+        int node2 = namer.add(Spec.struct("Node2", "example.com/app/tree"));
+
+        namer.assign();
+
+        assertEquals("Node", namer.name(node));
+        assertEquals("Node2", namer.name(node2));
+        assertEquals("Node3", namer.name(anonymous));
+    }
+
+    @Test
+    public void withAssignedNames_replacesPlaceholders() {
+        GoTypeNamer<Spec> namer = new GoTypeNamer<>(InMemoryTypeSource.INSTANCE, 0);
+        int key = namer.add(Spec.struct("Key", "example.com/app/model"));
+        int value = namer.add(Spec.struct("Key", "example.com/app/common"));
+        String type = "map[" + GoTypeNamer.placeholder(key) + "][]*" + GoTypeNamer.placeholder(value);
+
+        assertEquals("map[Key][]*Key", namer.withDesiredNames(type));
+        namer.assign();
+        assertEquals("map[Key][]*CommonKey", namer.withAssignedNames(type));
+    }
+}